@@ -0,0 +1,34 @@
+/*
+ * File: 	BruteForceBroadphase.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The default broadphase of the GameEngine: every moving item is tested against all
+ * items before it in the list, starting with the player and working back to the first
+ * MoveableGameItem. This is fine for games with a few dozen items.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class BruteForceBroadphase implements ICollisionBroadphase
+{
+    /**
+     * Test every moving item with collision detection against all items before it.
+     *
+     * @see phonegame.ICollisionBroadphase#findCollisions(phonegame.CollisionSet)
+     */
+    public void findCollisions(CollisionSet items)
+    {
+        for (int i = items.size() - 1; i >= items.getFirstMovingIndex(); i--)
+        {
+            if (items.isInitiator(i))
+            {
+                for (int j = 0; j < i; j++)
+                {
+                    items.test(i, j);
+                }
+            }
+        }
+    }
+}
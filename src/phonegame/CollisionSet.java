@@ -0,0 +1,204 @@
+/*
+ * File: 	CollisionSet.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The items of a game as seen by an ICollisionBroadphase. An item is identified by its
+ * index in the list of GameItems of the engine: static items first, then MoveableGameItems,
+ * then the player.
+ * <br/>
+ * A broadphase reads the positions and sizes of the items and calls test(a, b) for every pair
+ * that may collide. The engine rules are applied there: a pair is only tested when both items
+ * are active and the item with the highest index is a MoveableGameItem with collision detection.
+ * When the items overlap, both items get the collision event right away.
+ * <br/>
+ * The values are read straight from the store of the engine, so they are always up to date,
+ * also when a collision handler moves or deletes an item.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public final class CollisionSet
+{
+    /**
+     * The engine that gets the collisions
+     */
+    private GameEngine engine;
+
+    /**
+     * The store of the engine
+     */
+    private ItemStore store;
+
+    private int firstMovingIndex;
+
+    /**
+     * Number of pairs tested in this cycle
+     */
+    private int pairsTested;
+
+    /**
+     * Constructs a set
+     *
+     * @param engine the engine that must be notified of collisions
+     * @param store the store of the engine
+     */
+    CollisionSet(GameEngine engine, ItemStore store)
+    {
+        this.engine = engine;
+        this.store = store;
+    }
+
+    /**
+     * Prepare the set at the start of the collision detection.
+     *
+     * @param firstMovingItemIndex index of the first MoveableGameItem in the list
+     */
+    void reset(int firstMovingItemIndex)
+    {
+        firstMovingIndex = firstMovingItemIndex;
+        pairsTested = 0;
+    }
+
+    /**
+     * Gets the number of items.
+     *
+     * @return the number of items, valid indexes run from 0 to size()-1
+     */
+    public int size()
+    {
+        return store.size;
+    }
+
+    /**
+     * Gets the index of the first MoveableGameItem. Items before this index never initiate
+     * a collision, so a pair of two of these items need not be tested.
+     *
+     * @return the index of the first moving item
+     */
+    public int getFirstMovingIndex()
+    {
+        return firstMovingIndex;
+    }
+
+    /**
+     * Gets the x-position of an item
+     *
+     * @param i the index of the item
+     * @return the horizontal position
+     */
+    public int getX(int i)
+    {
+        return store.x[i];
+    }
+
+    /**
+     * Gets the y-position of an item
+     *
+     * @param i the index of the item
+     * @return the vertical position
+     */
+    public int getY(int i)
+    {
+        return store.y[i];
+    }
+
+    /**
+     * Gets the frame width of an item
+     *
+     * @param i the index of the item
+     * @return the width
+     */
+    public int getWidth(int i)
+    {
+        return store.width[i];
+    }
+
+    /**
+     * Gets the frame height of an item
+     *
+     * @param i the index of the item
+     * @return the height
+     */
+    public int getHeight(int i)
+    {
+        return store.height[i];
+    }
+
+    /**
+     * Gets the GameItem with the given index
+     *
+     * @param i the index of the item
+     * @return the item
+     */
+    public GameItem getItem(int i)
+    {
+        return store.items[i];
+    }
+
+    /**
+     * Check if an item is active. An item that has been deleted in this cycle (maybe by an earlier
+     * collision) will not collide any more.
+     *
+     * @param i the index of the item
+     * @return true if the item is active
+     */
+    public boolean isActive(int i)
+    {
+        return store.state[i] == GameItem.ACTIVE;
+    }
+
+    /**
+     * Check if an item can initiate a collision check, that is: it is an active MoveableGameItem
+     * with collision detection.
+     *
+     * @param i the index of the item
+     * @return true if the item checks for collisions with the items before it
+     */
+    public boolean isInitiator(int i)
+    {
+        return i >= firstMovingIndex && (store.flags[i] & ItemStore.DETECT) != 0 && store.state[i] == GameItem.ACTIVE;
+    }
+
+    /**
+     * Test if two items collide, and notify them if they do.
+     * The order of the indexes doesn't matter. Pairs that are not checked by the engine
+     * (see the class description) are ignored, and not counted as a test.
+     *
+     * @param a the index of one item
+     * @param b the index of another item
+     * @return true if there was a collision
+     */
+    public boolean test(int a, int b)
+    {
+        int high = a, low = b;
+        if (a < b)
+        {
+            high = b;
+            low = a;
+        } else if (a == b)
+        {
+            return false;
+        }
+        ItemStore st = store;
+        if (!isInitiator(high) || st.state[low] != GameItem.ACTIVE)
+            return false;
+        pairsTested++;
+        if (st.y[low] + st.height[low] <= st.y[high] || st.y[low] >= st.y[high] + st.height[high]
+                || st.x[low] + st.width[low] <= st.x[high] || st.x[low] >= st.x[high] + st.width[high])
+            return false;
+        engine.notifyCollision((MoveableGameItem) st.items[high], st.items[low]);
+        return true;
+    }
+
+    /**
+     * Gets the number of pairs that have been tested in this cycle
+     *
+     * @return the number of tests
+     */
+    int getPairsTested()
+    {
+        return pairsTested;
+    }
+}
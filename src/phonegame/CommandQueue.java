@@ -0,0 +1,166 @@
+/*
+ * File: 	CommandQueue.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Changes to the game world that come from other threads than the game loop: alarms of the phone,
+ * sound callbacks, a network or loader thread. They are put here and carried out by the game loop,
+ * all together, when it cleans up the item list (see GameEngine.addGameItem). So they never happen
+ * while the loop is going through the items, and they are carried out in the order they were given.
+ * <br/>
+ * There are two buffers: the other threads write in one, the game loop reads the other. The game loop
+ * swaps them, which takes a short lock, but only when something has been put in: it checks a volatile
+ * flag first, so a cycle without commands takes no lock at all. Writers lock each other out while they
+ * put a command in; CLDC has no compare-and-set, so a lock is the only way to let several threads write.
+ * The lock is held for a few assignments only, and the commands are carried out after it is released.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class CommandQueue
+{
+    /**
+     * Kinds of commands
+     */
+    static final int ADD = 1, DELETE = 2, TIMER = 3, TILE = 4;
+
+    /**
+     * Number of int arguments of each command
+     */
+    private static final int ARGS = 3;
+
+    /**
+     * The buffer the other threads write in: kind, target and arguments of each command
+     */
+    private int[] kinds, args;
+
+    private Object[] targets;
+
+    private int count;
+
+    /**
+     * The buffer the game loop reads
+     */
+    private int[] readKinds, readArgs;
+
+    private Object[] readTargets;
+
+    /**
+     * true if there are commands in the write buffer
+     */
+    private volatile boolean pending;
+
+    /**
+     * Constructs an empty queue
+     *
+     * @param size the number of commands that fit before the buffers grow
+     */
+    CommandQueue(int size)
+    {
+        kinds = new int[size];
+        args = new int[ARGS * size];
+        targets = new Object[size];
+        readKinds = new int[size];
+        readArgs = new int[ARGS * size];
+        readTargets = new Object[size];
+    }
+
+    /**
+     * Put a command in the queue. May be called by any thread.
+     *
+     * @param kind ADD, DELETE, TIMER or TILE
+     * @param target the item or listener the command is about, null for TILE
+     * @param a first argument
+     * @param b second argument
+     * @param c third argument
+     */
+    synchronized void post(int kind, Object target, int a, int b, int c)
+    {
+        if (count == kinds.length)
+        {   // rare: only when another thread sends many commands within one cycle
+            int[] biggerKinds = new int[2 * count];
+            int[] biggerArgs = new int[ARGS * 2 * count];
+            Object[] biggerTargets = new Object[2 * count];
+            System.arraycopy(kinds, 0, biggerKinds, 0, count);
+            System.arraycopy(args, 0, biggerArgs, 0, ARGS * count);
+            System.arraycopy(targets, 0, biggerTargets, 0, count);
+            kinds = biggerKinds;
+            args = biggerArgs;
+            targets = biggerTargets;
+        }
+        kinds[count] = kind;
+        targets[count] = target;
+        args[ARGS * count] = a;
+        args[ARGS * count + 1] = b;
+        args[ARGS * count + 2] = c;
+        count++;
+        pending = true;
+    }
+
+    /**
+     * Take all commands that have been put in the queue. Read them with getKind, getTarget and getArg,
+     * before the next call of take. To be used by the game loop only.
+     *
+     * @return the number of commands
+     */
+    int take()
+    {
+        if (!pending)
+        {
+            return 0;
+        }
+        synchronized (this)
+        {   // swap the buffers: the writers go on with the empty one
+            int[] k = kinds;
+            int[] a = args;
+            Object[] t = targets;
+            kinds = readKinds;
+            args = readArgs;
+            targets = readTargets;
+            readKinds = k;
+            readArgs = a;
+            readTargets = t;
+            int n = count;
+            count = 0;
+            pending = false;
+            return n;
+        }
+    }
+
+    /**
+     * Gets the kind of a command taken by take
+     *
+     * @param i the number of the command
+     * @return ADD, DELETE, TIMER or TILE
+     */
+    int getKind(int i)
+    {
+        return readKinds[i];
+    }
+
+    /**
+     * Gets the target of a command taken by take. The queue forgets it, so it can be garbage collected.
+     *
+     * @param i the number of the command
+     * @return the item or listener, null for TILE
+     */
+    Object getTarget(int i)
+    {
+        Object target = readTargets[i];
+        readTargets[i] = null;
+        return target;
+    }
+
+    /**
+     * Gets an argument of a command taken by take
+     *
+     * @param i the number of the command
+     * @param n the number of the argument: 0, 1 or 2
+     * @return the argument
+     */
+    int getArg(int i, int n)
+    {
+        return readArgs[ARGS * i + n];
+    }
+}
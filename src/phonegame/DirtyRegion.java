@@ -0,0 +1,118 @@
+/*
+ * File: 	DirtyRegion.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The parts of the world that must be painted again, for dirty rectangle painting
+ * (see GameEngine.setDirtyRectangles). The region is a short list of rectangles, in world coordinates.
+ * Rectangles that overlap are merged. When the list is full, or something changed that affects the
+ * whole screen (the viewport, the background or the tiles), the region becomes 'everything'.
+ * <br/>
+ * The game loop and the paint method may use the region at the same time, so the methods are synchronized.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class DirtyRegion
+{
+    /**
+     * The rectangles
+     */
+    private int[] x, y, w, h;
+
+    private int count;
+
+    /**
+     * true if everything must be painted
+     */
+    private boolean all = true;
+
+    /**
+     * Constructs a region that contains everything
+     *
+     * @param maxRects the maximum number of rectangles, if there are more, everything must be painted
+     */
+    DirtyRegion(int maxRects)
+    {
+        x = new int[maxRects];
+        y = new int[maxRects];
+        w = new int[maxRects];
+        h = new int[maxRects];
+    }
+
+    /**
+     * Add a rectangle. It is merged with the rectangles it overlaps.
+     *
+     * @param rx x of the rectangle, in the world
+     * @param ry y of the rectangle, in the world
+     * @param rw width of the rectangle
+     * @param rh height of the rectangle
+     */
+    synchronized void add(int rx, int ry, int rw, int rh)
+    {
+        if (all || rw <= 0 || rh <= 0)
+            return;
+        int i = 0;
+        while (i < count)
+        {
+            if (rx <= x[i] + w[i] && x[i] <= rx + rw && ry <= y[i] + h[i] && y[i] <= ry + rh)
+            {   // overlaps or touches: take the union out, and try again with it
+                int x2 = Math.max(rx + rw, x[i] + w[i]);
+                int y2 = Math.max(ry + rh, y[i] + h[i]);
+                rx = Math.min(rx, x[i]);
+                ry = Math.min(ry, y[i]);
+                rw = x2 - rx;
+                rh = y2 - ry;
+                count--;
+                x[i] = x[count];
+                y[i] = y[count];
+                w[i] = w[count];
+                h[i] = h[count];
+                i = 0;
+            } else
+            {
+                i++;
+            }
+        }
+        if (count == x.length)
+        {   // too many, paint everything
+            all = true;
+            return;
+        }
+        x[count] = rx;
+        y[count] = ry;
+        w[count] = rw;
+        h[count] = rh;
+        count++;
+    }
+
+    /**
+     * Make the region contain everything
+     */
+    synchronized void addAll()
+    {
+        all = true;
+    }
+
+    /**
+     * Copy the rectangles and empty the region
+     *
+     * @param rects room for the rectangles: x, y, width and height of every rectangle after each other
+     * @return the number of rectangles, -1 if everything must be painted
+     */
+    synchronized int take(int[] rects)
+    {
+        int n = all ? -1 : count;
+        for (int i = 0; i < n; i++)
+        {
+            rects[4 * i] = x[i];
+            rects[4 * i + 1] = y[i];
+            rects[4 * i + 2] = w[i];
+            rects[4 * i + 3] = h[i];
+        }
+        count = 0;
+        all = false;
+        return n;
+    }
+}
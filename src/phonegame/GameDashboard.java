@@ -4,8 +4,8 @@
  */
 package phonegame;
 
+import java.util.Hashtable;
 import javax.microedition.lcdui.*;
-import phonegame.utils.Tools;
 
 /**
  * This class visually represents the "dashboard" in you game. 
@@ -16,6 +16,7 @@ import phonegame.utils.Tools;
  * @version 2.0, October 11, 2005
  * @version 2.1, April 24, 2006
  * @version 3.0, November 17, 2006
+ * @version 3.3, October 16, 2026
  */
 
 public class GameDashboard
@@ -30,11 +31,12 @@ public class GameDashboard
 
     private int foreRed = 255, foreGreen = 255, foreBlue = 255;
 
-    private int dashX = 0, dashY = 0;
-
-    private int dashW = 0, dashH = 10;
+    /**
+     * Position and size, also read by the GameWindow for dirty rectangle painting
+     */
+    int dashX = 0, dashY = 0;
 
-    private int textX = 2, textY = 2;
+    int dashW = 0, dashH = 10;
 
     private int itemCounter = 0;
 
@@ -42,16 +44,47 @@ public class GameDashboard
 
     private boolean dotted = false;
 
-    private String[][] items;
+    /**
+     * The items: the label, the value and the text that is shown, label + ": " + value.
+     * The text is made when the label or value changes, not when the dashboard is painted.
+     * A deleted item leaves a null label.
+     */
+    private String[] labels, values, texts;
 
-    private String label, value;
+    /**
+     * The index of every label in the arrays, as an Integer
+     */
+    private Hashtable labelIndex = new Hashtable();
+
+    /**
+     * The font of the text, made when the style changes, not when the dashboard is painted
+     */
+    private Font font = Font.getFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_SMALL);
+
+    /**
+     * Changes since the last paint, for dirty rectangle painting
+     */
+    static final int CHANGED_TEXT = 1, CHANGED_LAYOUT = 2;
+
+    private int changes = CHANGED_LAYOUT;
+
+    /**
+     * The dashboard as it is shown, painted again only when something changes
+     */
+    private Image cache;
+
+    private Graphics cacheGraphics;
+
+    private boolean cacheValid = false;
 
     /**
      * Constructs an empty GameDashboard
      */
     public GameDashboard()
     {
-        items = new String[ITEMS_LENGHT][2];
+        labels = new String[ITEMS_LENGHT];
+        values = new String[ITEMS_LENGHT];
+        texts = new String[ITEMS_LENGHT];
     }
 
     /**
@@ -62,7 +95,7 @@ public class GameDashboard
      * Later on, you can change the value of a display-item with a given name.
      * <br />
      * You can add several 'items' on the dashboard. They will appear in line, ususally
-     * in the order in which you added them.
+     * in the order in which you added them. The label is the key of the item: use every label once.
      * 
      * @param label
      *                the label of this item, try to keep this short (e.g use LP instead of Lifepoints).
@@ -71,12 +104,19 @@ public class GameDashboard
      */
     public void addItem(String label, String value)
     {
-        if (itemCounter == ITEMS_LENGHT - 1)
-            items = (String[][]) Tools.expandArray(items, 10);
-
-        items[itemCounter][0] = label;
-        items[itemCounter][1] = value;
+        if (itemCounter == labels.length)
+        {
+            labels = grow(labels);
+            values = grow(values);
+            texts = grow(texts);
+        }
+        labels[itemCounter] = label;
+        values[itemCounter] = value;
+        texts[itemCounter] = label + ": " + value;
+        if (label != null)
+            labelIndex.put(label, new Integer(itemCounter));
         itemCounter++;
+        changed(CHANGED_TEXT);
     }
 
     /**
@@ -87,13 +127,14 @@ public class GameDashboard
      */
     public void deleteItem(String label)
     {
-        for (int i = 0; i < itemCounter; i++)
+        int i = indexOf(label);
+        if (i >= 0)
         {
-            if (items[i][0] != null && items[i][0].equals(label))
-            {
-                items[i][0] = null;
-                items[i][1] = null;
-            }
+            labelIndex.remove(label);
+            labels[i] = null;
+            values[i] = null;
+            texts[i] = null;
+            changed(CHANGED_TEXT);
         }
     }
 
@@ -106,10 +147,13 @@ public class GameDashboard
      */
     public void setItemValue(String label, String value)
     {
-        for (int i = 0; i < itemCounter; i++)
+        int i = indexOf(label);
+        // the same value every cycle needs no painting, and no new text
+        if (i >= 0 && (value == null || !value.equals(values[i])))
         {
-            if (items[i][0] != null && items[i][0].equals(label))
-                items[i][1] = value;
+            values[i] = value;
+            texts[i] = label + ": " + value;
+            changed(CHANGED_TEXT);
         }
     }
 
@@ -122,15 +166,8 @@ public class GameDashboard
      */
     public String getItemValue(String label)
     {
-        String result = null;
-        for (int i = 0; i < itemCounter; i++)
-        {
-            if (items[i][0] != null && items[i][0].equals(label))
-            {
-                result = items[i][1];
-            }
-        }
-        return result;
+        int i = indexOf(label);
+        return i < 0 ? null : values[i];
     }
 
     /**
@@ -150,6 +187,7 @@ public class GameDashboard
         backRed = red;
         backGreen = green;
         backBlue = blue;
+        changed(CHANGED_TEXT);
     }
 
     /**
@@ -167,6 +205,7 @@ public class GameDashboard
         foreRed = red;
         foreGreen = green;
         foreBlue = blue;
+        changed(CHANGED_TEXT);
     }
 
     /**
@@ -189,6 +228,7 @@ public class GameDashboard
         lineGreen = green;
         lineBlue = blue;
         this.dotted = dotted;
+        changed(CHANGED_TEXT);
     }
 
     /**
@@ -210,6 +250,8 @@ public class GameDashboard
             fontStyle |= Font.STYLE_ITALIC;
         if (underline)
             fontStyle |= Font.STYLE_UNDERLINED;
+        font = Font.getFont(Font.FACE_SYSTEM, fontStyle, Font.SIZE_SMALL);
+        changed(CHANGED_TEXT);
     }
 
     /**
@@ -224,7 +266,7 @@ public class GameDashboard
     {
         dashX = x;
         dashY = y;
-        textY = dashY + TEXT_OFFSET;
+        changed(CHANGED_LAYOUT);
     }
 
     /**
@@ -239,11 +281,40 @@ public class GameDashboard
     {
         dashW = w;
         dashH = h;
+        changed(CHANGED_LAYOUT);
+    }
+
+    /**
+     * Paint the dashboard again in the next frame. The dashboard knows when its items change,
+     * but if you override paint to show something else, call this method when it changes.
+     * This is only needed for dirty rectangle painting, see GameEngine.setDirtyRectangles.
+     */
+    public void invalidate()
+    {
+        changed(CHANGED_TEXT);
+    }
+
+    /**
+     * Get the changes since the last call, for dirty rectangle painting.
+     * Called by paint, while the game loop may be changing values, so it is synchronized.
+     * 
+     * @return CHANGED_TEXT and/or CHANGED_LAYOUT, 0 if nothing changed
+     */
+    synchronized int takeChanges()
+    {
+        int c = changes;
+        changes = 0;
+        return c;
     }
 
     /**
      * Draws the dashboard on the screen.
      * <p>
+     * The dashboard is drawn in an image once, and this image is drawn on the screen in every frame.
+     * Only when an item, a color, the font, the position or the size changes, the image is drawn again.
+     * A dashboard without background color is drawn directly on the screen, because the image
+     * can't be transparent.
+     * <p>
      * Note: If you want to create a more fancy dashboard you'll need to override this method with your own
      * implementation.
      * 
@@ -252,12 +323,45 @@ public class GameDashboard
      */
     public void paint(Graphics g)
     {
+        if (dashW <= 0 || dashH <= 0)
+            return;
+        if (backRed == -1 || backGreen == -1 || backBlue == -1)
+        {   // the background must show through
+            g.setClip(dashX, dashY, dashW, dashH);
+            draw(g, dashX, dashY);
+            g.setFont(Font.getDefaultFont());
+            return;
+        }
+        if (takeCacheInvalid())
+        {
+            if (cache == null || cache.getWidth() != dashW || cache.getHeight() != dashH)
+            {
+                cache = Image.createImage(dashW, dashH);
+                cacheGraphics = cache.getGraphics();
+            }
+            draw(cacheGraphics, 0, 0);
+        }
         g.setClip(dashX, dashY, dashW, dashH);
+        g.drawImage(cache, dashX, dashY, Graphics.TOP | Graphics.LEFT);
+    }
+
+    /**
+     * Draw the background, the border and the items
+     * 
+     * @param g
+     *                the Graphics object to draw with, the clip must be set
+     * @param x
+     *                the horizontal position of the dashboard in g
+     * @param y
+     *                the vertical position of the dashboard in g
+     */
+    private void draw(Graphics g, int x, int y)
+    {
         // draw background (if color are not equal to -1)
-        if (backRed != -1 && backGreen != -1 && backGreen != -1)
+        if (backRed != -1 && backGreen != -1 && backBlue != -1)
         {
             g.setColor(backRed, backGreen, backBlue);
-            g.fillRect(dashX, dashY, dashW, dashH);
+            g.fillRect(x, y, dashW, dashH);
         }
 
         // draw border (if color are not equal to -1)
@@ -268,22 +372,25 @@ public class GameDashboard
                 g.setStrokeStyle(Graphics.DOTTED);
             }
             g.setColor(lineRed, lineGreen, lineBlue);
-            g.drawRect(dashX, dashY, dashW - 1, dashH - 1);
+            g.drawRect(x, y, dashW - 1, dashH - 1);
+            g.setStrokeStyle(Graphics.SOLID);
         }
 
         // set text style
         g.setColor(foreRed, foreGreen, foreBlue);
-        g.setFont(Font.getFont(Font.FACE_SYSTEM, fontStyle, Font.SIZE_SMALL));
+        g.setFont(font);
 
+        int textX = TEXT_OFFSET;
+        int textY = TEXT_OFFSET;
         for (int i = 0; i < itemCounter; i++)
         {
-            if (items[i][0] != null )
-            {	label = items[i][0];
-            	value = items[i][1];
-
-            	// draw the text on the proper position
-            	g.drawString(label + ": " + value, textX, textY, Graphics.TOP | Graphics.LEFT);
-            	textX += (label.length() + value.length()) * 7;
+            // one read: the game loop may remove the item meanwhile
+            String text = texts[i];
+            if (text != null)
+            {	// draw the text on the proper position
+            	g.drawString(text, x + textX, y + textY, Graphics.TOP | Graphics.LEFT);
+            	// the width of label and value, the ": " between them is not counted
+            	textX += (text.length() - 2) * 7;
 
             	// perform word wrapping
             	if (textX > dashW - 20)
@@ -293,13 +400,60 @@ public class GameDashboard
             	}
             }
         }
+    }
 
-        // reset positions
-        textX = TEXT_OFFSET;
-        textY = dashY + TEXT_OFFSET;
+    /**
+     * Find out if the cached image must be drawn again, and mark it valid. This is done in one step,
+     * because the game loop may make it invalid at the same time: a change while drawing makes it 
+     * invalid again, and is drawn the next time.
+     * 
+     * @return true if the cached image is not valid
+     */
+    private synchronized boolean takeCacheInvalid()
+    {
+        boolean invalid = !cacheValid;
+        cacheValid = true;
+        return invalid;
+    }
+
+    /**
+     * Remember a change, for the cached image and for dirty rectangle painting
+     * 
+     * @param change
+     *                CHANGED_TEXT or CHANGED_LAYOUT
+     */
+    private synchronized void changed(int change)
+    {
+        changes |= change;
+        cacheValid = false;
+    }
+
+    /**
+     * Find an item
+     * 
+     * @param label
+     *                the label of the item
+     * @return the index of the item, -1 if there is no item with this label
+     */
+    private int indexOf(String label)
+    {
+        if (label == null)
+            return -1;
+        Integer i = (Integer) labelIndex.get(label);
+        return i == null ? -1 : i.intValue();
+    }
 
-        // reset styles
-        g.setFont(Font.getDefaultFont());
-        g.setStrokeStyle(Graphics.SOLID);
+    /**
+     * Copy an array into one twice as big
+     * 
+     * @param old
+     *                the array
+     * @return the new array
+     */
+    private static String[] grow(String[] old)
+    {
+        String[] result = new String[2 * old.length];
+        System.arraycopy(old, 0, result, 0, old.length);
+        return result;
     }
 }
\ No newline at end of file
@@ -5,8 +5,8 @@
 package phonegame;
 
 import java.io.IOException;
+import java.util.Hashtable;
 import java.util.Vector;
-import java.util.Enumeration;
 import javax.microedition.lcdui.*;
 import javax.microedition.midlet.*;
 import phonegame.utils.*;
@@ -25,21 +25,56 @@ import phonegame.utils.*;
 public abstract class GameEngine extends MIDlet implements Runnable
 {
     /**
-     * maximum frames per second, that is cycles of the game loop.
+     * default number of cycles (steps) of the game loop per second.
      * needed to prevent CPU hogging
      */
     private static final int MAX_FPS = 10;
 
     /**
-     * time in milliseconds per cycle of the game loop
+     * default time in milliseconds per cycle of the game loop
      */
     static final int MS_PER_FRAME = 1000 / MAX_FPS;
 
+    /**
+     * default maximum number of cycles that may be executed before the screen is painted
+     */
+    private static final int MAX_STEPS_PER_FRAME = 5;
+
     /**
      * the display of the phone
      */
     static Display display;
 
+    /**
+     * true when games run without display, see HeadlessRunner
+     */
+    private static boolean headless = false;
+
+    /**
+     * true when a headless game is still painted, in an image, see HeadlessRunner
+     */
+    private static boolean headlessPainting = false;
+
+    /**
+     * screen size in headless mode
+     */
+    private static int headlessWidth, headlessHeight;
+
+    /**
+     * Default memory budget of a tile map from an ITileChunkSource
+     */
+    private static final int DEFAULT_TILE_BUDGET = 16 * 1024;
+
+    /**
+     * Memory budget of a tile map from an ITileChunkSource, in bytes
+     */
+    private int tileByteBudget = DEFAULT_TILE_BUDGET;
+
+    /**
+     * seed for the random generator of the next engine, 0 to use the time
+     */
+    private static long initialSeed = 0;
+
     /**
      * the gamewindow of the game (game will be painted in this window)
      */
@@ -51,36 +86,40 @@ public abstract class GameEngine extends MIDlet implements Runnable
     private GamePlayer player;
 
     /**
-     * Vector of all gameItems that are active
+     * Store of all gameItems that are active
      * List is ordered: (non-moving) GameItems, then MoveableGameItems, then Player
      * This will ensure right painting order.
+     * Positions, sizes, states and flags are kept in arrays in the store, the loops of the
+     * engine read them from there.
      */
-    private Vector gameItems;
+    private ItemStore gameItems;
     
     /**
-     * Index of first MovableGameItem in the Vector
+     * Index of first MovableGameItem in the store
      * Non moveable GameItems are inserted at this position, i.e. before the Moveables
      */
     private int firstMovingItemIndex;
 
     /**
-     * Index of Player in the Vector
+     * Index of Player in the store
      * MoveableGameItems are inserted at this position, i.e. before the Player
      */
     private int playerIndex;
 
     /**
-     * Vector of new gameItems
+     * New gameItems
      * New GameItems are kept aside until the end of a cycle, because they
      * would mess up the action if this would happen live. At the end of a cycle
-     * they are moved to the Vector of active items
+     * they are all moved to the store in one go.
      */
-    private Vector newItems;
+    private GameItem[] newItems;
+
+    private int nrOfNewItems;
 
     /**
-     * Vector of all outstanding alarms
+     * All outstanding alarms
      */
-    private Vector alarmItems;
+    private TimerWheel alarmItems;
 
     /**
      * Vector of all outstanding alarms
@@ -90,7 +129,12 @@ public abstract class GameEngine extends MIDlet implements Runnable
     /**
      * Thread for game loop
      */
-    private Thread gameLoop;
+    private volatile Thread gameLoop;
+
+    /**
+     * Changes to the world from other threads, carried out by the game loop
+     */
+    private CommandQueue commands;
 
     /**
      * the flag for interrupt of the game loop (menu, incoming call)
@@ -102,11 +146,91 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     private IMenuListener menuListener;
 
+    /**
+     * Source of simulated key events (if any)
+     */
+    private IInputSource inputSource;
+
+    /**
+     * The recording in progress, and the recording being replayed (if any)
+     */
+    private GameRecording recording, replaying;
+
     /**
      * 
      */
     private int cycleNumber;
 
+    /**
+     * time in milliseconds per cycle of the game loop, see setLogicRate
+     */
+    private int msPerStep = MS_PER_FRAME;
+
+    /**
+     * maximum number of cycles before the screen is painted, see setMaxStepsPerFrame
+     */
+    private int maxStepsPerFrame = MAX_STEPS_PER_FRAME;
+
+    /**
+     * true if items are moved with fixed-point integers instead of doubles
+     */
+    private boolean fixedPoint = false;
+
+    /**
+     * true if items keep the part of a move that is less than a pixel, for the next move
+     */
+    private boolean subPixel = false;
+
+    /**
+     * number of cycles executed before the last paint
+     */
+    private int stepsInLastFrame;
+
+    /**
+     * total number of paints that have been skipped because the game was behind
+     */
+    private int skippedFrames;
+
+    /**
+     * The profiler, null if profiling is off
+     */
+    private GameProfiler profiler;
+
+    /**
+     * The random generator of this game
+     */
+    private GameRandom random;
+
+    /**
+     * Work done in the current cycle, for the profiler
+     */
+    private int itemsMoved, tileCollisions, timersFired;
+
+    /**
+     * The broadphase that selects the pairs of items that are tested for collision
+     */
+    private ICollisionBroadphase broadphase;
+
+    /**
+     * The items as seen by the broadphase
+     */
+    private CollisionSet collisionSet;
+
+    /**
+     * The items in the store, by class
+     */
+    private ItemTypeIndex typeIndex;
+
+    /**
+     * Pools of deleted items to recycle, by class
+     */
+    private Hashtable itemPools = new Hashtable();
+
+    /**
+     * Number of item pairs that have been tested for collision in the last cycle
+     */
+    private int pairsTested;
+
     /**
      * the dashboard (if any)
      */
@@ -174,32 +298,49 @@ public abstract class GameEngine extends MIDlet implements Runnable
     public GameEngine()
     {
         // list of GameItems
-        gameItems = new Vector();
-        newItems = new Vector();
+        gameItems = new ItemStore(32);
+        newItems = new GameItem[16];
         firstMovingItemIndex = 0;
         playerIndex = 0;
         // initialize gameloop
         gameLoop = null;
         gameSuspended = false;
         cycleNumber = 0;
+        // every engine its own random generator, before the game constructor needs it
+        random = new GameRandom(initialSeed != 0 ? initialSeed : System.currentTimeMillis() + hashCode());
+        // collision detection: all pairs, unless the game chooses otherwise
+        broadphase = new BruteForceBroadphase();
+        collisionSet = new CollisionSet(this, gameItems);
+        typeIndex = new ItemTypeIndex();
         // Vectors for Listeners
-        alarmItems = new Vector();
+        alarmItems = new TimerWheel();
         stepItems = new Vector();
+        commands = new CommandQueue(16);
         // Window contains the screen
         window = new GameWindow();
         setBounds(0, 0, window.screenWidth, window.screenHeight);
-        display = Display.getDisplay(this);
-        display.setCurrent(window);
+        if ( !headless )
+        {
+            display = Display.getDisplay(this);
+            display.setCurrent(window);
+        }
     }
 
     /**
      * The GameLoop, keeps the game running...
      * Don't call this method yourself! Use startGame() to start the game.
+     * <br/>
+     * The loop executes a fixed number of cycles per second (see setLogicRate), so game time keeps
+     * up with the clock. The time that has passed is added up; for every 'msPerStep' milliseconds one
+     * cycle is executed. When the phone can't keep up, several cycles are executed before the
+     * screen is painted again, that is: frames are skipped. There is a maximum to that, 
+     * see setMaxStepsPerFrame. If the game is even further behind, it slows down after all.
      */
     public void run()
     {
-        long cycleStartTime;
-        long timeSinceStart;
+        long previousTime = System.currentTimeMillis();
+        // start with one cycle due, so the game starts immediately
+        long lag = msPerStep;
 
         // Updates the viewPort for the first time 
         // (use stepcounter to see, so the viewport will also be set when starting a new level
@@ -207,48 +348,498 @@ public abstract class GameEngine extends MIDlet implements Runnable
         {	window.updateViewPortFirstTime();
         }
         while ( Thread.currentThread() == gameLoop )
-        { 	// System.out.println("=====STEP: "+cycleNumber);
-            cycleStartTime = System.currentTimeMillis();
-            try
-            {	// execute the various game operations
-                // moveItems en playerAction will check tile collisions: on move only!!!
-            	moveItems();
-            	window.handleKey();
-            	detectItemCollisions(); 
-            	alarmEvents();
-            	stepItems();
-            	cleanUpItemList();
-    		} catch ( Exception e)
-    		{	System.out.println(e.getMessage());
-    		    e.printStackTrace();
-    		}
-            // paint it!
-            window.serviceRepaints();
-            window.repaint();
-
-            timeSinceStart = ( System.currentTimeMillis() - cycleStartTime);
-            //System.out.println("=====used step time in step "+cycleNumber+": "+timeSinceStart);
+        { 	long now = System.currentTimeMillis();
+            lag += Math.max(0, now - previousTime);		// the clock may be set back
+            previousTime = now;
+            int steps = 0;
+            while ( lag >= msPerStep && steps < maxStepsPerFrame && Thread.currentThread() == gameLoop )
+            {
+                step();
+                lag -= msPerStep;
+                steps++;
+            }
+            if ( lag >= msPerStep )
+            {	// too far behind: forget the time that can't be caught up with
+                lag = msPerStep - 1;
+            }
+            if ( steps > 0 )
+            {	// paint it!
+                stepsInLastFrame = steps;
+                skippedFrames += steps - 1;
+                window.serviceRepaints();
+                window.handOverKeyTime();
+                window.repaint();
+            }
             //System.out.println("No of items: "+gameItems.size()+" fmgi: " + firstMovingItemIndex+" pi: "+playerIndex);
-            if (timeSinceStart < MS_PER_FRAME)
+            if (lag < msPerStep)
             {
                 try
                 {
-                    // pause thread for the time left..
-                    Thread.sleep(MS_PER_FRAME - timeSinceStart);
+                    // pause thread until the next cycle is due..
+                    Thread.sleep(msPerStep - lag);
                 } catch (InterruptedException e)
                 {}
             }
-            cycleNumber++;
         }
     }
 
+    /**
+     * Execute one cycle of the game: move, handle keys, collisions, alarms, steps and clean up.
+     */
+    private final void step()
+    {	// System.out.println("=====STEP: "+cycleNumber);
+        if ( inputSource != null )
+        {	// simulated keys
+            inputSource.pollInput(this, cycleNumber);
+        }
+        GameProfiler p = profiler;
+        long time = ( p == null ? 0 : System.currentTimeMillis() );
+        tileCollisions = 0;
+        try
+        {	// execute the various game operations
+            // moveItems en playerAction will check tile collisions: on move only!!!
+        	window.keepTiles();
+        	moveItems();
+        	if ( p != null ) time = p.lap(GameProfiler.MOVE, time);
+        	window.handleKey();
+        	if ( p != null ) time = p.lap(GameProfiler.KEYS, time);
+        	detectItemCollisions(); 
+        	if ( p != null ) time = p.lap(GameProfiler.COLLISIONS, time);
+        	alarmEvents();
+        	if ( p != null ) time = p.lap(GameProfiler.ALARMS, time);
+        	stepItems();
+        	if ( p != null ) time = p.lap(GameProfiler.STEPS, time);
+        	cleanUpItemList();
+        	if ( p != null )
+        	{	p.lap(GameProfiler.CLEANUP, time);
+        	    p.record(GameProfiler.ITEMS_MOVED, itemsMoved);
+        	    p.record(GameProfiler.PAIRS_TESTED, pairsTested);
+        	    p.record(GameProfiler.TILE_COLLISIONS, tileCollisions);
+        	    p.record(GameProfiler.TIMERS_FIRED, timersFired);
+        	}
+		} catch ( Exception e)
+		{	System.out.println(e.getMessage());
+		    e.printStackTrace();
+		}
+        cycleNumber++;
+    }
+
+    /**
+     * Run the game without display, as fast as possible: cycles are executed one after
+     * the other, and the screen is not painted. Stops early when the game is stopped.
+     * To be used by the HeadlessRunner only.
+     * 
+     * @param cycles the number of cycles to execute
+     * @return the number of cycles executed
+     */
+    final int runHeadless(int cycles)
+    {
+        gameLoop = Thread.currentThread();
+        cleanUpItemList();
+        if ( cycleNumber == 0 && player != null )
+        {	window.updateViewPortFirstTime();
+        }
+        int done = 0;
+        while ( done < cycles && gameLoop == Thread.currentThread() )
+        {
+            step();
+            if ( player != null )
+            {	// normally done when painting
+                window.updateViewPort();
+            }
+            done++;
+        }
+        return done;
+    }
+
+    /**
+     * Set the seed of the random generators of the games created after this, so the random
+     * numbers used by the constructor of the game are the same in every run.
+     * To be used by the HeadlessRunner only.
+     * 
+     * @param seed the seed, 0 to use the time again
+     */
+    static void setInitialSeed(long seed)
+    {
+        initialSeed = seed;
+        if (seed != 0)
+        {
+            Tools.setRandomSeed(seed);
+        }
+    }
+
+    /**
+     * Switch to headless mode, before the game is created. There will be no display, 
+     * no painting, no sound, and images are not decoded (only their size is read).
+     * With painting, images are decoded and the screen is kept in an offscreen buffer;
+     * the runner paints it with paintHeadless.
+     * To be used by the HeadlessRunner only.
+     * 
+     * @param screenWidth the width of the simulated screen
+     * @param screenHeight the height of the simulated screen
+     * @param painting true if the runner will paint the screen
+     */
+    static void setHeadless(int screenWidth, int screenHeight, boolean painting)
+    {
+        headless = true;
+        headlessPainting = painting;
+        headlessWidth = screenWidth;
+        headlessHeight = screenHeight;
+    }
+
+    /**
+     * Find out if images must be decoded: on a phone, and in headless mode with painting.
+     * 
+     * @return false if only the size of images is needed
+     */
+    static boolean decodesImages()
+    {
+        return !headless || headlessPainting;
+    }
+
+    /**
+     * Paint the screen, as the display does with the game window: the offscreen buffer
+     * is brought up to date and drawn in the given Graphics.
+     * To be used by the HeadlessRunner only, in headless mode with painting.
+     * 
+     * @param g the Graphics of an image the size of the screen
+     */
+    final void paintHeadless(Graphics g)
+    {
+        window.paint(g);
+    }
+
+    /**
+     * Find out if the game runs without display, see HeadlessRunner.
+     * 
+     * @return true in headless mode
+     */
+    public static boolean isHeadless()
+    {
+        return headless;
+    }
+
+    /**
+     * Set a source of simulated key events, for example a bot or a test script. 
+     * It will be asked for input at the start of every cycle.
+     * 
+     * @param source the input source, null to stop simulating
+     */
+    public final void setInputSource(IInputSource source)
+    {
+        inputSource = source;
+    }
+
+    /**
+     * Simulate pressing a key. The key is handled in the current or next cycle,
+     * just like a real key press.
+     * 
+     * @param gameAction the game action of the key: Canvas.UP, DOWN, LEFT, RIGHT, FIRE,
+     * GAME_A, GAME_B, GAME_C or GAME_D
+     */
+    public final void pressKey(int gameAction)
+    {
+        window.keys.offer(KeyEventQueue.PRESSED, gameAction, System.currentTimeMillis());
+    }
+
+    /**
+     * Simulate releasing the key.
+     */
+    public final void releaseKey()
+    {
+        window.keys.offer(KeyEventQueue.RELEASED, 0, System.currentTimeMillis());
+    }
+
+    /**
+     * Get the number of key events that were lost because the game loop did not take them
+     * in time. The game loop handles a few key events per cycle, the rest wait in a queue; 
+     * when that is full, new events are lost. 
+     * 
+     * @return the number of lost key events since the start of the game
+     */
+    public final int getKeyOverflows()
+    {
+        return window.keys.getOverflows();
+    }
+
+    /**
+     * Start recording the keys, to replay this session later. The random generator of the game 
+     * (getRandom) and Tools.random get a new seed, which is part of the recording.
+     * 
+     * @return the recording, it is filled until stopRecording is called
+     */
+    public final GameRecording startRecording()
+    {
+        long seed = System.currentTimeMillis();
+        setRandomSeed(seed);
+        recording = new GameRecording(seed, cycleNumber);
+        return recording;
+    }
+
+    /**
+     * Stop recording the keys.
+     * 
+     * @return the recording, or null if there was no recording
+     */
+    public final GameRecording stopRecording()
+    {
+        GameRecording result = recording;
+        if (result != null)
+        {
+            result.stop(cycleNumber);
+            recording = null;
+        }
+        return result;
+    }
+
+    /**
+     * Replay a recorded session. From the current cycle on, the keys of the recording are used instead of the 
+     * keys of the phone, until the end of the recording. The random generators get the seed of the recording.
+     * Start the replay in the same state of the game as the recording, normally right after the game has
+     * been created. Use setLogicRate to replay faster or slower.
+     * 
+     * @param replay the recording
+     */
+    public final void replay(GameRecording replay)
+    {
+        setRandomSeed(replay.getSeed());
+        replay.startReplay(cycleNumber);
+        replaying = replay;
+    }
+
+    /**
+     * Find out if a recording is being replayed
+     * 
+     * @return true during a replay
+     */
+    public final boolean isReplaying()
+    {
+        return replaying != null;
+    }
+
+    /**
+     * Switch the profiler on or off. When it is on, the time of every phase of the game loop
+     * and of painting is measured, together with the work done and the time from a key press 
+     * to its action and to the frame that shows it. See GameProfiler.
+     * 
+     * @param on true to switch profiling on
+     */
+    public final void setProfiling(boolean on)
+    {
+        if ( !on )
+        {
+            profiler = null;
+        } else if ( profiler == null )
+        {
+            profiler = new GameProfiler();
+        }
+    }
+
+    /**
+     * Get the profiler, to find out where the time of a cycle goes.
+     * 
+     * @return the profiler, or null if profiling is off
+     */
+    public final GameProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * Set the number of cycles of the game loop per second. Every cycle, items move, alarms are
+     * checked and steps are taken. The default is 10 cycles per second. If the phone is too slow
+     * to paint the screen after every cycle, some paints will be skipped, but the game keeps its speed.
+     * <br/>
+     * Note: the speed of MoveableGameItems is in pixels per cycle, and timers are in cycles,
+     * so they will go faster when you increase the rate.
+     * <br/>
+     * The loop works in whole milliseconds, so a cycle takes 1000 / stepsPerSecond milliseconds
+     * rounded to the nearest whole number, and the rate you get is close to the one you asked for, 
+     * not always the same: 30 gives 33 ms per cycle (30.3 cycles per second), 60 gives 17 ms 
+     * (58.8 cycles per second). See getLogicRate.
+     * 
+     * @param stepsPerSecond the number of cycles per second
+     * @throws GameException if the rate is not between 1 and 1000
+     */
+    public final void setLogicRate(int stepsPerSecond)
+    {
+        if ( stepsPerSecond <= 0 || stepsPerSecond > 1000 )
+        {
+            throw new GameException("The logic rate must be between 1 and 1000 steps per second");
+        }
+        msPerStep = (1000 + stepsPerSecond / 2) / stepsPerSecond;
+    }
+
+    /**
+     * Get the number of cycles of the game loop per second. This is the rate the loop really runs at,
+     * which may differ a little from the one given to setLogicRate, see there.
+     * 
+     * @return the number of cycles per second, rounded to the nearest whole number
+     */
+    public final int getLogicRate()
+    {
+        return (1000 + msPerStep / 2) / msPerStep;
+    }
+
+    /**
+     * Set the maximum number of cycles that may be executed before the screen is painted again.
+     * If the game is further behind than this, it will slow down. The default is 5.
+     * 
+     * @param steps the maximum number of cycles per frame, 1 means: never skip a frame
+     * @throws GameException if steps is smaller than 1
+     */
+    public final void setMaxStepsPerFrame(int steps)
+    {
+        if ( steps < 1 )
+        {
+            throw new GameException("The maximum number of steps per frame must be at least 1");
+        }
+        maxStepsPerFrame = steps;
+    }
+
+    /**
+     * Get the number of cycles that were executed before the screen was last painted.
+     * This is 1 when the phone keeps up with the game.
+     * 
+     * @return the number of cycles in the last frame
+     */
+    public final int getStepsInLastFrame()
+    {
+        return stepsInLastFrame;
+    }
+
+    /**
+     * Get the number of frames (paints of the screen) that have been skipped since the start
+     * of the game, because the phone couldn't keep up.
+     * 
+     * @return the number of skipped frames
+     */
+    public final int getSkippedFrames()
+    {
+        return skippedFrames;
+    }
+
+    /**
+     * Move the items with integers only, instead of doubles. Speed, direction and friction are then
+     * kept as 16.16 fixed-point numbers, also in the tile collision detection. Phones without floating 
+     * point hardware can move many more items this way. The movement is the same, apart from 
+     * rounding differences smaller than a pixel.
+     * <br/>
+     * The methods of MoveableGameItem still use doubles, so setting speed and direction costs the same.
+     * You can switch at any moment.
+     * 
+     * @param fixed true to use fixed-point numbers, false to use doubles (the default)
+     */
+    public final void setFixedPointKinematics(boolean fixed)
+    {
+        fixedPoint = fixed;
+    }
+
+    /**
+     * Find out if items are moved with fixed-point numbers, see setFixedPointKinematics
+     * 
+     * @return true if fixed-point numbers are used
+     */
+    public final boolean isFixedPointKinematics()
+    {
+        return fixedPoint;
+    }
+
+    /**
+     * Keep the part of a move that is less than a pixel, and add it to the next move. Positions
+     * are whole pixels, so normally every move is rounded and an item with speed 0.4 does not move
+     * at all. With sub-pixel movement it moves 2 pixels in 5 cycles, and items slowing down by 
+     * friction come to a smooth stop. Slow items no longer need a higher speed to move.
+     * <br/>
+     * The rest of a move is dropped when the position of an item is set, also by bounce, moveUpto
+     * and undoMove, and when sub-pixel movement is switched on or off: the drift of the rounded moves
+     * before it is never made up in one jump. See MoveableGameItem.getSubPixelErrorX() to see what 
+     * is kept or lost.
+     * 
+     * @param on true for sub-pixel movement, false to round every move (the default)
+     */
+    public final void setSubPixelMovement(boolean on)
+    {
+        subPixel = on;
+    }
+
+    /**
+     * Find out if items keep the part of a move that is less than a pixel, see setSubPixelMovement
+     * 
+     * @return true for sub-pixel movement
+     */
+    public final boolean isSubPixelMovement()
+    {
+        return subPixel;
+    }
+
+    /**
+     * Paint only the parts of the screen that have changed, instead of the whole screen in every frame.
+     * The engine keeps track of the items that move, change their frame or image, appear or disappear,
+     * of the tiles that change and of the dashboard. When the viewport moves, or most of the screen 
+     * changes, the whole screen is painted after all.
+     * <br/>
+     * This makes a big difference for games with a fixed viewport and a few moving items, 
+     * especially with a background image. It does not help when the viewport follows the player.
+     * If you override GameDashboard.paint, call invalidate() on the dashboard when its contents change.
+     * 
+     * @param on true to paint only the changes, false to paint everything (the default)
+     */
+    public final void setDirtyRectangles(boolean on)
+    {
+        window.dirtyRectangles = on;
+        window.dirty.addAll();
+    }
+
+    /**
+     * Find out if only the changed parts of the screen are painted, see setDirtyRectangles
+     * 
+     * @return true if only the changes are painted
+     */
+    public final boolean isDirtyRectangles()
+    {
+        return window.dirtyRectangles;
+    }
+
+    /**
+     * Keep the tiles in an image that is a little larger than the screen, instead of drawing every
+     * visible tile in every frame. Every tile is drawn in the image once. When the viewport moves,
+     * only the rows and columns of tiles that come into view are drawn, and changeTile draws only
+     * the changed tile. Painting the tiles then takes a few drawImage calls, whatever the size of
+     * the screen or the tiles, so a scrolling game is as fast as one with a fixed viewport.
+     * <br/>
+     * The tiles are drawn on the background color in the image, so the cache is not used when you
+     * set a background image. The image takes memory: about as much as the screen. If there is
+     * not enough memory, the cache is switched off and the tiles are drawn as before.
+     * 
+     * @param on true to keep the tiles in an image, false to draw them in every frame (the default)
+     */
+    public final void setTileCache(boolean on)
+    {
+        window.tileCache = on;
+        window.changedTiles.addAll();
+    }
+
+    /**
+     * Find out if the tiles are kept in an image, see setTileCache
+     * 
+     * @return true if the tiles are kept in an image
+     */
+    public final boolean isTileCache()
+    {
+        return window.tileCache;
+    }
+
     /**
      * Start the game loop, or restart it after a pause.
      * <br/>
      * Note: Game time (stepnumber and alarms) are not affected. 
      */
     public void startGame()
-    {	if ( gameLoop == null )
+    {	if ( headless )
+    	{	// no thread: the HeadlessRunner runs the cycles
+    	    cleanUpItemList();
+    	} else if ( gameLoop == null )
     	{	// cleanUp: activite all items at startup, so the game will start immediately
         	cleanUpItemList();
         	// Create Thread for the game loop
@@ -291,7 +882,10 @@ public abstract class GameEngine extends MIDlet implements Runnable
     {
         stopGame();
         GameSound.stopBackgroundSound(false);
-        notifyDestroyed();
+        if ( !headless )
+        {
+            notifyDestroyed();
+        }
     }
     
     /**
@@ -303,7 +897,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     public void resetGameTime()
     {
-        alarmItems.removeAllElements();
+        alarmItems.clear();
         cycleNumber = 0;
     }
     
@@ -336,81 +930,144 @@ public abstract class GameEngine extends MIDlet implements Runnable
      * <li>remove deleted items, including timers</li>
      * <li>make new items active</li>
      * </ul>
+     * All of this is done in a single pass over the list, so a cycle with many deleted
+     * and new items (bullets!) costs no more than a pass over the list.
+     * <br/>
+     * First the changes that came from other threads are carried out, so they are part of this clean up.
      */
     private final void cleanUpItemList()
     {
-        int teller = 0;
-        while (teller < gameItems.size())
+        applyCommands();
+        synchronized (gameItems)
+        {   // paint must not copy the store while its rows are being copied
+            gameItems.compact(firstMovingItemIndex, playerIndex, newItems, nrOfNewItems);
+        }
+        firstMovingItemIndex = gameItems.firstMoving;
+        playerIndex = gameItems.firstPlayer;
+        for (int i = 0; i < nrOfNewItems; i++)
+        {	// the new items are in the game now, skipped ones have been set to null
+            if ( newItems[i] != null )
+            {
+                typeIndex.add(newItems[i]);
+                newItems[i].holdImage();
+                newItems[i] = null;
+            }
+        }
+        nrOfNewItems = 0;
+        // remove timers of the items that have left the game
+        for (int i = 0; i < gameItems.nrRemoved; i++)
         {
-            GameItem item = (GameItem) gameItems.elementAt(teller);
-            if (item.getGiState() == GameItem.DELETED)
+            GameItem item = gameItems.removed[i];
+            typeIndex.remove(item);
+            deleteTimersForItem(item);
+            // its place on the screen must be painted again
+            item.untrackPainted(window.dirty);
+            if ( item instanceof IStepListener )
             {
-                gameItems.removeElement(item);
-                deleteTimersForItem(item);
-                if ( item instanceof IStepListener )
-                {
-                    removeStepListener( (IStepListener)item );
-                }
-                if ( teller < firstMovingItemIndex )
-                {	// it was a static item
-                    firstMovingItemIndex--;
-                }
-                if ( teller < playerIndex )
-                {	// it was not the player... uhhh this will happen nearly all of the time, but no messing around!
-                    playerIndex--;
-                }
-            } else
-            {	// advance teller if item stays in
-                teller++;
+                removeStepListener( (IStepListener)item );
             }
+            // a pooled item keeps its image for the next time, others release it
+            ItemPool pool = (ItemPool) itemPools.get(item.getClass());
+            if ( pool == null || !pool.release(item) )
+            {
+                item.releaseImage();
+            }
+        }
+        gameItems.clearRemoved();
+        typeIndex.compact();
+    }
+
+    /**
+     * Keep a new item aside until the end of the cycle
+     * 
+     * @param item the new item
+     */
+    private void addNewItem(GameItem item)
+    {
+        if (nrOfNewItems == newItems.length)
+        {
+            GameItem[] bigger = new GameItem[2 * newItems.length];
+            System.arraycopy(newItems, 0, bigger, 0, nrOfNewItems);
+            newItems = bigger;
         }
-        // move new items to active list
-        int nrnew = newItems.size();					// bloody fool!!: size changes when you delete items!
-        for (teller = 0; teller < nrnew; teller++)
-        {	// always take the first item, we will delete them from the list as soon as we're done with them
-            GameItem it = (GameItem) newItems.elementAt(0);
-            if ( it instanceof GamePlayer )
-            {	// add to the end, indexes stay the same
-                gameItems.addElement(it);
-            } else if ( it instanceof MoveableGameItem )
-            {	// add before player, increase playerindex
-                gameItems.insertElementAt(it, playerIndex);
-                playerIndex++;
-            } else // non-moving GameItem
-            {	// add before first MoveableGameItem, increase both indexes
-                gameItems.insertElementAt(it, firstMovingItemIndex);
-                playerIndex++;
-                firstMovingItemIndex++;
+        newItems[nrOfNewItems++] = item;
+    }
+
+    /**
+     * Carry out the changes that other threads have put in the command queue, in the order they came in
+     */
+    private void applyCommands()
+    {
+        CommandQueue q = commands;
+        int n = q.take();
+        for (int i = 0; i < n; i++)
+        {
+            Object target = q.getTarget(i);
+            switch (q.getKind(i))
+            {
+                case CommandQueue.ADD:
+                    addNewItem((GameItem) target);
+                    ((GameItem) target).setGiState(GameItem.ACTIVE);
+                    break;
+                case CommandQueue.DELETE:
+                    ((GameItem) target).setGiState(GameItem.DELETED);
+                    break;
+                case CommandQueue.TIMER:
+                    // the alarms of this cycle have been given already, so the timer rings in the next cycle at the earliest
+                    alarmItems.add(cycleNumber + Math.max(q.getArg(i, 0), 1), q.getArg(i, 1), (IAlarmListener) target);
+                    break;
+                case CommandQueue.TILE:
+                    setTile(q.getArg(i, 0), q.getArg(i, 1), (byte) q.getArg(i, 2));
+                    break;
             }
-            newItems.removeElementAt(0);
         }
     }
 
+    /**
+     * Find out if the calling thread must leave changes to the game loop: that is when the game
+     * is running and the caller is not the game loop.
+     *
+     * @return true if the change must be put in the command queue
+     */
+    private boolean otherThread()
+    {
+        Thread loop = gameLoop;
+        return loop != null && loop != Thread.currentThread();
+    }
+
     /**
      * Generates the 'move' events for every moveable item in the game
      */
     private final void moveItems()
     {
-        for (int i = firstMovingItemIndex; i < gameItems.size(); i++)
+        ItemStore st = gameItems;
+        itemsMoved = 0;
+        for (int i = firstMovingItemIndex; i < st.size; i++)
         {  // MoveableGameItem guaranteed, since we start at firstMovingItemIndex in ordered list!
             // if (gameItems.elementAt(i) instanceof MoveableGameItem)
             // {	
-                MoveableGameItem it = (MoveableGameItem) gameItems.elementAt(i);
-            	if (it.isActive() && it.getSpeed() > 0)
+            	if (st.state[i] != GameItem.ACTIVE)
+            	    continue;
+                MoveableGameItem it = (MoveableGameItem) st.items[i];
+            	if (it.hasSpeed())
                 {
-                    it.move();
+                    if (fixedPoint)
+                        it.moveFixed(subPixel);
+                    else
+                        it.move(subPixel);
+                    itemsMoved++;
                     // after move: player move implies viewport update (no side effects)
                     if (it instanceof GamePlayer)
                     {	window.updateViewPort = true;
                     }
                     // check tile collisions on move
-                    if ( it.hasCollisionDetection() )
+                    if ( (st.flags[i] & ItemStore.DETECT) != 0 )
                 	{	
                         window.checkForTileCollisions(it);
                 	}
-                    // check if item has passed world boundaries
-                    if (it.getX() >= maxX || it.getX()+it.getFrameWidth() <= minX 
-                            || it.getY() >= maxY || it.getY()+it.getFrameHeight() <= minY)
+                    // check if item has passed world boundaries (note: a tile collision may have moved it)
+                    if (st.x[i] >= maxX || st.x[i]+st.width[i] <= minX 
+                            || st.y[i] >= maxY || st.y[i]+st.height[i] <= minY)
                     {
                         it.outsideWorld();
                     }
@@ -420,18 +1077,92 @@ public abstract class GameEngine extends MIDlet implements Runnable
         }
     }
     
+    /**
+     * Generates the collision events between items.
+     * The broadphase selects the pairs of items that may collide, the CollisionSet
+     * tests them and notifies the items.
+     */
     private final void detectItemCollisions()
     {
-        for (int i = gameItems.size()-1; i >=firstMovingItemIndex ; i--)
-        {  	
-            MoveableGameItem it = (MoveableGameItem) gameItems.elementAt(i);
-            if (it.isActive() && it.hasCollisionDetection())
-            {
-                window.checkForItemCollisions(it, i);
-            }
+        collisionSet.reset(firstMovingItemIndex);
+        broadphase.findCollisions(collisionSet);
+        pairsTested = collisionSet.getPairsTested();
+    }
+
+    /**
+     * Notify both game items of the collision that has occured.
+     * A GameItem that is not moveable doesn't get the event.
+     * 
+     * @param currentItem the moving item that detected the collision
+     * @param anotherItem the item it collided with
+     */
+    final void notifyCollision(MoveableGameItem currentItem, GameItem anotherItem)
+    {
+        currentItem.collisionOccured(anotherItem);
+        if ( anotherItem instanceof MoveableGameItem )
+        {
+        	((MoveableGameItem)anotherItem).collisionOccured(currentItem);
         }
     }
 
+    /**
+     * Select the way the engine finds the items that are tested for collision.
+     * By default every moving item is tested against all other items (BruteForceBroadphase).
+     * In games with many items that is slow, choose one of the other broadphases:
+     * <ul>
+     * <li>SpatialHashBroadphase: a grid of cells, only items that share a cell are tested.
+     * Good when items are spread out over a big world.</li>
+     * <li>SweepAndPruneBroadphase: items are kept sorted on x, only items whose x-ranges
+     * overlap are tested. Good when most items are slow or static.</li>
+     * </ul>
+     * Select the broadphase when you set up the game, for example in the constructor.
+     * Collisions are reported just like with the default: every pair of items once, and
+     * both items get the event when they are MoveableGameItems. The order in which the
+     * collisions are reported may be different.
+     * 
+     * @param bp the broadphase, or null for the default
+     */
+    public final void setCollisionBroadphase(ICollisionBroadphase bp)
+    {
+        if ( bp == null )
+        {
+            broadphase = new BruteForceBroadphase();
+        } else
+        {
+            broadphase = bp;
+        }
+    }
+
+    /**
+     * Use a uniform grid for the collision detection between items. 
+     * This is short for setCollisionBroadphase(new SpatialHashBroadphase(cellSize)).
+     * 
+     * @see phonegame.SpatialHashBroadphase
+     * @param cellSize the width and height of a cell in pixels, or 0 to switch the grid off
+     */
+    public final void setCollisionCellSize(int cellSize)
+    {
+        if ( cellSize > 0 )
+        {
+            setCollisionBroadphase(new SpatialHashBroadphase(cellSize));
+        } else
+        {
+            setCollisionBroadphase(null);
+        }
+    }
+
+    /**
+     * Gets the number of item pairs that have been tested for collision in the last cycle
+     * of the game loop. Use this to see how much work the collision detection does, and 
+     * to choose a good cell size for the collision grid.
+     * 
+     * @return the number of tested pairs
+     */
+    public final int getCollisionPairsTested()
+    {
+        return pairsTested;
+    }
+
     /**
      * Generates the 'step' events for every item in the game
      */
@@ -452,24 +1183,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     private final void alarmEvents()
     {
-        if (alarmItems.size() > 0)
-        {
-            int i = 0;
-            while (i < alarmItems.size())
-            {
-                GameTimer tm = (GameTimer) alarmItems.elementAt(i);
-                if (cycleNumber == tm.getEndCycleNumber())
-                {
-                    IAlarmListener list = tm.getListener();
-                    list.alarm(tm.getID());
-                    alarmItems.removeElementAt(i); // i will point to next Timer, due to remove
-                } else
-                {
-                    i++; // Timer i stays in, move to next
-                }
-            }
-        } // else
-            // cycleNumber = 0; // no overflow of int can occur
+        timersFired = alarmItems.fire(cycleNumber);
     }
 
     /**
@@ -479,21 +1193,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     private void deleteTimersForItem(GameItem item)
     {
-        if (alarmItems.size() > 0)
-        {
-            int i = 0;
-            while (i < alarmItems.size())
-            {
-                GameTimer tm = (GameTimer) alarmItems.elementAt(i);
-                if (item == tm.getListener())
-                {	// i will point to next Timer, due to remove
-                    alarmItems.removeElementAt(i); 
-                } else
-                {	// Timer i stays in, move to next
-                    i++; 
-                }
-            }
-        }
+        alarmItems.cancel(item);
     }
 
     /**
@@ -507,10 +1207,18 @@ public abstract class GameEngine extends MIDlet implements Runnable
      * @param listener
      *             the object that needs to receive the call. This object must implement
      * 				the IAlarmListener interface.
+     * <br/>
+     * May be called from any thread. When called from another thread than the game loop,
+     * the time is counted from the end of the current cycle.
      */
     public void setTimer(int time, int id, IAlarmListener listener)
     {
-        alarmItems.addElement(new GameTimer(cycleNumber + time, id, listener));
+        if ( otherThread() )
+        {
+            commands.post(CommandQueue.TIMER, listener, time, id, 0);
+            return;
+        }
+        alarmItems.add(cycleNumber + time, id, listener);
     }
     
     /**
@@ -560,7 +1268,10 @@ public abstract class GameEngine extends MIDlet implements Runnable
         if ( menuItems.length > 0 )
         {
             menuListener = listener;
-            Tools.makeMenu(menuItems, ((CommandListener) window), ((Displayable) window));
+            if ( !headless )
+            {
+                Tools.makeMenu(menuItems, ((CommandListener) window), ((Displayable) window));
+            }
         } else
         {
             throw new GameException("Can't create menu, list of menu items is empty.");
@@ -577,7 +1288,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
     protected void addPlayer(GamePlayer player)
     {
         this.player = player;
-        newItems.addElement(player); // the player is also a gameitem so add it to the list
+        addNewItem(player); // the player is also a gameitem so add it to the list
         player.setGiState(GameItem.ACTIVE);
         window.setViewportLimits();
     }
@@ -652,36 +1363,133 @@ public abstract class GameEngine extends MIDlet implements Runnable
     }
     /**
      * Add a GameItem to the game.
+     * <br/>
+     * This method, deleteGameItem, setTimer and changeTile may be called from any thread, for example
+     * from a thread that loads the next part of a level. When called from another thread than the game
+     * loop, the change is put in a queue, and the game loop carries it out at the end of the cycle.
+     * So it never happens while the game loop is going through the items, and changes happen in the
+     * order they were made. Other methods, acquireGameItem for example, are for the game loop only.
      * 
      * @param item
      *                the GameItem to be added
      */
     public void addGameItem(GameItem item)
     {
-        newItems.addElement(item);
+        if ( otherThread() )
+        {
+            commands.post(CommandQueue.ADD, item, 0, 0, 0);
+            return;
+        }
+        addNewItem(item);
         item.setGiState(GameItem.ACTIVE);
     }
 
     /**
      * Delete a GameItem from the game.
+     * <br/>
+     * If a pool has been registered for the type of the item, the item will be put in the pool
+     * at the end of the cycle, when it leaves the game. Don't use the item any more after
+     * deleting it: it may be handed out again by acquireGameItem.
+     * <br/>
+     * May be called from any thread, see addGameItem.
      * 
      * @param item
      *                the item to remove
      */
     public void deleteGameItem(GameItem item)
     {
+        if ( otherThread() )
+        {
+            commands.post(CommandQueue.DELETE, item, 0, 0, 0);
+            return;
+        }
         item.setGiState(GameItem.DELETED);
     }
 
+    /**
+     * Recycle GameItems of the given type. Deleted items of this type are kept in a pool,
+     * and acquireGameItem will hand them out again, instead of creating new ones. Use this
+     * for items that are created and deleted all the time, like bullets: there will be no
+     * new objects and no loading of images while the game runs.
+     * 
+     * @param type
+     *                the class of the items, for example Bullet.class
+     * @param factory
+     *                creates new items and resets recycled ones
+     * @param maxSize
+     *                the maximal number of deleted items kept in the pool
+     * @throws GameException
+     *                 if the factory is null or the size is negative
+     */
+    public final void registerItemPool(Class type, IItemFactory factory, int maxSize)
+    {
+        if ( factory == null || maxSize < 0 )
+        {
+            throw new GameException("Can't create item pool for " + type.getName() + ", no factory or negative size.");
+        }
+        itemPools.put(type, new ItemPool(factory, maxSize));
+    }
+
+    /**
+     * Get an item of the given type and add it to the game. If there is a deleted item in the pool 
+     * of this type, it is reset by the factory and used again. If not, the factory creates a new one. 
+     * Set the position (and whatever else is needed) of the item after this call, it will become
+     * active at the end of the cycle, just like an item added by addGameItem.
+     * 
+     * @param type
+     *                the class of the item, a pool must have been registered for it
+     * @return the item
+     * @throws GameException
+     *                 if there is no pool for this type
+     */
+    public final GameItem acquireGameItem(Class type)
+    {
+        ItemPool pool = (ItemPool) itemPools.get(type);
+        if ( pool == null )
+        {
+            throw new GameException("There is no item pool for " + type.getName());
+        }
+        GameItem item = pool.acquire();
+        addGameItem(item);
+        return item;
+    }
+
+    /**
+     * Get the number of calls to acquireGameItem that got a recycled item.
+     * 
+     * @param type
+     *                the class of the items
+     * @return the number of hits, 0 if there is no pool for this type
+     */
+    public final int getPoolHits(Class type)
+    {
+        ItemPool pool = (ItemPool) itemPools.get(type);
+        return pool == null ? 0 : pool.getHits();
+    }
+
+    /**
+     * Get the number of calls to acquireGameItem that needed a new item. If this number
+     * keeps growing while the game runs, the pool is too small.
+     * 
+     * @param type
+     *                the class of the items
+     * @return the number of misses, 0 if there is no pool for this type
+     */
+    public final int getPoolMisses(Class type)
+    {
+        ItemPool pool = (ItemPool) itemPools.get(type);
+        return pool == null ? 0 : pool.getMisses();
+    }
+
     /**
      * Delete all GameItems from the game, including the player. To be used when
      * you move from a level to the next one.
      */
     public final void deleteAllGameItems()
     {
-        for (Enumeration e = gameItems.elements() ; e.hasMoreElements() ;)
+        for (int i = 0; i < gameItems.size; i++)
         {	// note: loop ok, because delete just changes the state of the item.
-            deleteGameItem( (GameItem) e.nextElement() );
+            deleteGameItem( gameItems.items[i] );
         }
     }
 
@@ -695,22 +1503,46 @@ public abstract class GameEngine extends MIDlet implements Runnable
     public final Vector getItemsOfType(String type)
     {
         Vector result = new Vector();
-        for (Enumeration e = gameItems.elements() ; e.hasMoreElements() ;)
-        {	GameItem gi = (GameItem) e.nextElement();
-            // remove package name from the getName() string
-            String fullQualifiedName = gi.getClass().getName();
-            int lastIndex = fullQualifiedName.lastIndexOf('.');
-            String className = fullQualifiedName.substring(lastIndex + 1);
-
-            // check if we found an instance of the given type
-            if (className.equals(type))
-            {
-                result.addElement(gi);
-            }
-        }
+        typeIndex.getItems(type, result);
         return result;
     }
 
+    /**
+     * Get all instances of the specified type (GameItem) that are currently in the game, without
+     * creating a new Vector. Use this in step or alarm code that runs often:
+     * keep one Vector and pass it every time.
+     * 
+     * @param type
+     *                the classname of the gameitem (without the package name and without .java!)
+     * @param result
+     *                the Vector that will be filled. It is cleared first.
+     * @return the number of items found
+     */
+    public final int getItemsOfType(String type, Vector result)
+    {
+        result.removeAllElements();
+        return typeIndex.getItems(type, result);
+    }
+
+    /**
+     * Get all instances of the specified class that are currently in the game, without
+     * creating a new Vector. Use this in step or alarm code that runs often:
+     * keep one Vector and pass it every time.
+     * <br/>
+     * Note: only items of exactly this class are found, not items of subclasses.
+     * 
+     * @param type
+     *                the class of the gameitem, for example Bullet.class
+     * @param result
+     *                the Vector that will be filled. It is cleared first.
+     * @return the number of items found
+     */
+    public final int getItemsOfType(Class type, Vector result)
+    {
+        result.removeAllElements();
+        return typeIndex.getItems(type, result);
+    }
+
     /**
      * Find out if there are any instances of the specified type (GameItem) currently in the game.
      * 
@@ -720,22 +1552,21 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     public final boolean existItemsOfType(String type)
     {
-        for (int i = 0; i < gameItems.size(); i++)
-        {
-            if ( ((GameItem)gameItems.elementAt(i)).isActive() )
-            {	// remove package name from the getName() string
-                String fullQualifiedName = gameItems.elementAt(i).getClass().getName();
-                int lastIndex = fullQualifiedName.lastIndexOf('.');
-                String className = fullQualifiedName.substring(lastIndex + 1);
+        return typeIndex.existActive(type);
+    }
 
-                // check if we found an instance of the given type
-                if (className.equals(type))
-                {
-                    return true;
-                }
-            }
-        }
-        return false;
+    /**
+     * Find out if there are any instances of the specified class currently in the game.
+     * <br/>
+     * Note: only items of exactly this class are found, not items of subclasses.
+     * 
+     * @param type
+     *                the class of the gameitem, for example Bullet.class
+     * @return boolean, true if any items are present, false otherwise.
+     */
+    public final boolean existItemsOfType(Class type)
+    {
+        return typeIndex.existActive(type);
     }
 
     /**
@@ -806,7 +1637,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
      * @return a random x-position
      */
     public int getRandomX(int width)
-    {	return minX+Tools.random(maxX-minX-width);
+    {	return minX+random.nextInt(maxX-minX-width);
     }
 
     /**
@@ -818,7 +1649,31 @@ public abstract class GameEngine extends MIDlet implements Runnable
      * @return a random y-position
      */
     public int getRandomY(int height)
-    {	return minY+Tools.random(maxY-minY-height);
+    {	return minY+random.nextInt(maxY-minY-height);
+    }
+
+    /**
+     * Get the random generator of this game. Use it instead of Tools.random: it is faster, 
+     * and a recorded game can only be replayed when all random numbers come from here.
+     * 
+     * @return the random generator
+     */
+    public final GameRandom getRandom()
+    {
+        return random;
+    }
+
+    /**
+     * Restart the random generator of this game, and Tools.random, with the given seed.
+     * With the same seed and the same keys, the game goes exactly the same.
+     * 
+     * @param seed
+     *                the seed
+     */
+    public final void setRandomSeed(long seed)
+    {
+        random.setSeed(seed);
+        Tools.setRandomSeed(seed);
     }
 
     /**
@@ -860,18 +1715,25 @@ public abstract class GameEngine extends MIDlet implements Runnable
     {
         window.tileWidth = tileWidth;
         window.tileHeight = tileHeight;
-        // load tile images using the given path(s)
-        window.tileImages = new Image[imagePaths.length];
+        // load tile images using the given path(s), from the cache
+        Image[] images = new Image[imagePaths.length];
         for (int i = 0; i < imagePaths.length; i++)
         {
-            try
-            {
-                window.tileImages[i] = Image.createImage(imagePaths[i]);
-            } catch (IOException e)
+            images[i] = GameImageCache.acquire(imagePaths[i]);
+        }
+        // release the images of the previous tiles (acquire first, they may be the same)
+        if (window.tilePaths != null)
+        {
+            for (int i = 0; i < window.tilePaths.length; i++)
             {
-                throw new GameException("The image " + imagePaths[i] + " could not be found");
+                GameImageCache.release(window.tilePaths[i]);
             }
         }
+        window.tileImages = images;
+        window.tilePaths = new String[imagePaths.length];
+        System.arraycopy(imagePaths, 0, window.tilePaths, 0, imagePaths.length);
+        window.dirty.addAll();
+        window.changedTiles.addAll();
     }
     
      /**
@@ -893,11 +1755,79 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     protected final void addEnvironmentMap( byte[][] map, int xPosition, int yPosition) 
     {
-        window.mapStartX = xPosition;
-        window.mapStartY = yPosition;
-        window.map = map;
-        window.mapHeight = map.length;				// inits moved from 'drawMap' by Paul
-        window.mapWidth = map[0].length;
+        window.setMap(new TileMap(map), xPosition, yPosition);
+    }
+
+    /**
+     * Create an environment from a map that is too big to keep in memory, for a huge scrolling world.
+     * The map is divided in chunks, which are loaded from the source when the viewport or a moving
+     * item comes near, and dropped again when the memory budget (see setTileByteBudget) is used up.
+     * The tiles work just like those of a map from a byte array.
+     * <br/>
+     * A chunk in which a tile is changed by changeTile is kept in memory from then on.
+     * 
+     * @param source
+     *                the source of the tiles, for example a PackedTileSource
+     * @param xPosition
+     *                the horizontal start position of the map on the screen
+     * @param yPosition
+     *                the vertical start position of the map on the screen
+     * @throws GameException
+     *                 if the chunk size of the source is not a power of 2
+     */
+    protected final void addEnvironmentMap(ITileChunkSource source, int xPosition, int yPosition)
+    		throws GameException
+    {
+        window.setMap(new TileMap(source, tileByteBudget), xPosition, yPosition);
+    }
+
+    /**
+     * Set the memory budget of the chunks of an environment map from an ITileChunkSource.
+     * When more chunks are loaded, the chunk farthest from the viewport is dropped. The budget is
+     * a soft limit: the chunks around the viewport and the chunks in which a tile was changed are 
+     * always kept, even if they don't fit in the budget, and a dropped chunk uses memory until the
+     * garbage collector frees it.
+     * <br/>
+     * Set the budget before calling addEnvironmentMap, the default is 16 kB.
+     * 
+     * @param bytes
+     *                the budget in bytes, one byte per tile
+     */
+    public final void setTileByteBudget(int bytes)
+    {
+        tileByteBudget = bytes;
+    }
+
+    /**
+     * Get the number of chunks of the environment map that have been loaded from its ITileChunkSource.
+     * If this number keeps growing while the player stays in the same area, the budget is too small.
+     * 
+     * @return the number of chunks, 0 if the map is not from an ITileChunkSource
+     */
+    public final int getTileChunkLoads()
+    {
+        return window.map == null ? 0 : window.map.getLoads();
+    }
+
+    /**
+     * Load a level from a resource in the jar: the tile images, the environment map and the items.
+     * Levels are made from text and CSV files with the LevelConverter tool (in the tools folder);
+     * a level in a resource makes a smaller jar and starts faster than a map written as a byte array
+     * in the code of the game.
+     * <br/>
+     * The tile images and the map replace those set earlier, just like setTileImages and addEnvironmentMap.
+     * For every item in the level, the spawn listener is called, it must create the item and add it to the game.
+     * 
+     * @param path
+     *                path of the level, for example "/levels/level1.lvl"
+     * @param listener
+     *                creates the items of the level, may be null if the level has no items
+     * @throws GameException
+     *                 if the level can't be found or read
+     */
+    protected final void loadLevel(String path, ISpawnListener listener) throws GameException
+    {
+        LevelLoader.load(this, path, listener);
     }
     
     /**
@@ -910,18 +1840,41 @@ public abstract class GameEngine extends MIDlet implements Runnable
      * <br/>
      * The tilenumber is a byte value. It must be smaller than 256. You need
      * to use a type cast, when you enter an integer number, like (byte)0
+     * <br/>
+     * May be called from any thread, see addGameItem.
      * 
      * @param xindex the x-pos of the tile in the tile array
      * @param yindex the y-pos of the tile in the tile array
      * @param tilenr the new tile number.
      */
     public final void changeTile(int xindex, int yindex, byte tilenr)
+    {
+        if ( otherThread() )
+        {
+            commands.post(CommandQueue.TILE, null, xindex, yindex, tilenr);
+            return;
+        }
+        setTile(xindex, yindex, tilenr);
+    }
+
+    /**
+     * Change a tile in the game world, by the game loop
+     * 
+     * @param xindex the x-pos of the tile in the tile array
+     * @param yindex the y-pos of the tile in the tile array
+     * @param tilenr the new tile number.
+     */
+    private void setTile(int xindex, int yindex, byte tilenr)
     {
         if (xindex>= 0 && xindex<window.mapWidth &&
             yindex>= 0 && yindex<window.mapHeight &&
             tilenr >=0 && tilenr <=window.tileImages.length)
         {
-            window.map[yindex][xindex]=tilenr;
+            window.map.set(xindex, yindex, tilenr);
+            int x = window.mapStartX + xindex * window.tileWidth;
+            int y = window.mapStartY + yindex * window.tileHeight;
+            window.dirty.add(x, y, window.tileWidth, window.tileHeight);
+            window.changedTiles.add(x, y, window.tileWidth, window.tileHeight);
         }
     }
   
@@ -960,11 +1913,12 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     public final GameItem findItemAt(int x, int y, int w, int h)
     {
-        for (Enumeration e = gameItems.elements() ; e.hasMoreElements() ;)
-        {  GameItem gi = (GameItem) e.nextElement();
-        	if ( window.isCollision(x, y, w, h, gi.getX(), gi.getY(), gi.getFrameWidth(), gi.getFrameHeight()) )
+        ItemStore st = gameItems;
+        for (int i = 0; i < st.size; i++)
+        {
+        	if ( window.isCollision(x, y, w, h, st.x[i], st.y[i], st.width[i], st.height[i]) )
         	{
-        	    return gi;
+        	    return st.items[i];
         	}
         }
         return null;
@@ -978,6 +1932,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
     protected void addGameDashboard(GameDashboard dash)
     {
         dashboard = dash;
+        window.dirty.addAll();
     }
 
     /**
@@ -995,6 +1950,8 @@ public abstract class GameEngine extends MIDlet implements Runnable
         window.red = red;
         window.green = green;
         window.blue = blue;
+        window.dirty.addAll();
+        window.changedTiles.addAll();
     }
     
     /**
@@ -1006,6 +1963,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
     public void clearBackgroundImage()
     {
         window.backgroundImage = null;
+        window.dirty.addAll();
     }
 
     /**
@@ -1030,6 +1988,10 @@ public abstract class GameEngine extends MIDlet implements Runnable
     protected void setBackgroundImage(String imagePath, boolean autoSize) throws GameException
     {
         Image backgroundImage = null;
+        if ( !decodesImages() )
+        {	// nothing is painted
+            return;
+        }
 
         // load the image which is defined by the given imagePath
         try
@@ -1050,6 +2012,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
             window.autoSizedBackground = false;
             window.backgroundImage = backgroundImage;
         }
+        window.dirty.addAll();
     }
 
     /**
@@ -1062,6 +2025,8 @@ public abstract class GameEngine extends MIDlet implements Runnable
      */
     protected void showGameForm(GameForm form)
     {
+        if (headless)
+            return;
         if (form != null)
             display.setCurrent(form.getDisplay());
         else
@@ -1150,19 +2115,48 @@ public abstract class GameEngine extends MIDlet implements Runnable
 
         private Image offScreenBuffer; // double buffering
 
-        
         /**
-         * Boolean <code>newKey</code> indicates if a key has been pressed 
-         * that has not yet been handled.
+         * The graphics of the offscreen buffer. getGraphics makes a new object every time,
+         * so it is asked once.
          */
-        private boolean newKey;
+        private Graphics offScreenGraphics;
+
         
+        /**
+         * Size of the key event queue, a power of 2
+         */
+        private static final int KEY_QUEUE_SIZE = 32;
+
+        /**
+         * Maximum number of key events handled in one cycle, the rest waits for the next cycle
+         */
+        private static final int MAX_KEY_EVENTS_PER_CYCLE = 4;
+
+        /**
+         * The key events of the phone and of pressKey, until the game loop handles them
+         */
+        private KeyEventQueue keys = new KeyEventQueue(KEY_QUEUE_SIZE);
+
+        /**
+         * Time of the first key press handled since the last repaint request, 0 if none. 
+         * Only the game loop uses it.
+         */
+        private long actionKeyTime = 0;
+
+        /**
+         * Time of the first key press whose action the next paint shows, 0 if none. 
+         * The game loop sets it, paint clears it.
+         */
+        private volatile long frameKeyTime = 0;
+
         /**
          * Boolean <code>keyHeld</code> indicates if a key is stell pressed.
          * <br/>
-         * GameEngine will perform an action in each cycle of the game loop
-         * if either newKey or keyHeld is true, that is: if there is an unhandled
-         * keystroke or the already handled key is steill pressed.
+         * GameEngine will perform an action for every key press, and in each cycle of the 
+         * game loop without a key press if keyHeld is true, that is: if the already handled 
+         * key is still pressed.
+         * <br/>
+         * Only the game loop uses keyHeld and spelAction.
          */
         private boolean keyHeld;
         
@@ -1174,6 +2168,11 @@ public abstract class GameEngine extends MIDlet implements Runnable
         /* attributes that are filled in the GameRunner */
         private Image[] tileImages;
 
+        /**
+         * Paths of the tile images, to release them in the GameImageCache
+         */
+        private String[] tilePaths;
+
         private Image backgroundImage;
 
         private int red = 0;
@@ -1188,10 +2187,85 @@ public abstract class GameEngine extends MIDlet implements Runnable
 
         private int mapWidth, mapHeight;
 
-        private byte[][] map;
+        /**
+         * The tiles, null if there is no environment map
+         */
+        private TileMap map;
 
         private boolean autoSizedBackground = false;
 
+        /**
+         * Maximum number of dirty rectangles, with more the whole screen is painted
+         */
+        private static final int MAX_DIRTY_RECTS = 16;
+
+        /**
+         * true if only the changed parts of the screen are painted, see setDirtyRectangles
+         */
+        private boolean dirtyRectangles = false;
+
+        /**
+         * The parts of the world that must be painted again
+         */
+        private DirtyRegion dirty = new DirtyRegion(MAX_DIRTY_RECTS);
+
+        /**
+         * The rectangles taken from the region, to paint them
+         */
+        private int[] dirtyRects = new int[4 * MAX_DIRTY_RECTS];
+
+        /**
+         * The viewport of the last frame
+         */
+        private int paintedViewPortX, paintedViewPortY;
+
+        /**
+         * The items that are painted, with their position, frame size and flags: a copy of the rows
+         * of the item list, taken at the start of paint, see copyItems
+         */
+        private GameItem[] paintItems = new GameItem[0];
+
+        private int[] paintX = new int[0], paintY = new int[0], paintW = new int[0], paintH = new int[0],
+                paintFlags = new int[0];
+
+        private int nrPaintItems = 0;
+
+        /**
+         * Maximum number of rectangles of changed tiles, with more the whole tile cache is drawn
+         */
+        private static final int MAX_CHANGED_TILES = 8;
+
+        /**
+         * true if the tiles are kept in an image, see setTileCache
+         */
+        private boolean tileCache = false;
+
+        /**
+         * The tile cache: the tiles around the viewport on the background color. It is a ring:
+         * tile column c is kept in column c modulo cacheColumns of the image, and likewise for 
+         * the rows, so after scrolling only the new rows and columns must be drawn.
+         */
+        private Image tileCacheImage;
+
+        private Graphics tileCacheGraphics;
+
+        private int cacheColumns, cacheRows;
+
+        /**
+         * The first tile column and row that are in the cache, they may lie outside the map
+         */
+        private int cacheFirstColumn, cacheFirstRow;
+
+        /**
+         * The tiles that changed since they were drawn in the cache, in world coordinates
+         */
+        private DirtyRegion changedTiles = new DirtyRegion(MAX_CHANGED_TILES);
+
+        /**
+         * The rectangles taken from changedTiles
+         */
+        private int[] changedRects = new int[4 * MAX_CHANGED_TILES];
+
         private boolean updateViewPort = false;
 
         /**
@@ -1216,12 +2290,24 @@ public abstract class GameEngine extends MIDlet implements Runnable
          */
         public GameWindow()
         {
+            if ( headless )
+            {	// no canvas on screen, the runner may paint in the offscreen buffer
+                screenHeight = headlessHeight;
+                screenWidth = headlessWidth;
+                if ( headlessPainting )
+                {
+                    offScreenBuffer = Image.createImage(screenWidth, screenHeight);
+                    offScreenGraphics = offScreenBuffer.getGraphics();
+                }
+                return;
+            }
             // set screen sizes based on canvas
             screenHeight = getHeight();
             screenWidth = getWidth();
 
             // create offscreen buffer (for doublebuffering)
             offScreenBuffer = Image.createImage(getWidth(), getHeight());
+            offScreenGraphics = offScreenBuffer.getGraphics();
         }
 
         /**
@@ -1289,7 +2375,6 @@ public abstract class GameEngine extends MIDlet implements Runnable
 			{
 				updateViewPort = true;
 				// System.out.println("Player moved, detect collisions");
-				// window.checkForItemCollisions(player);
 				if (player.hasCollisionDetection())
 				{
 					window.checkForTileCollisions(player);
@@ -1299,56 +2384,165 @@ public abstract class GameEngine extends MIDlet implements Runnable
 		}
 
         /**
-         * Is called when a key is pressed. 
-         * Switches both booleans on, game loop will execute event.
-         * <br/>
-         * NOTE: This way of handling keys ensures synchronisation with the game loop,
-         * important for collision detection, but it has a drawback: if a player manages
-         * to hit two different keys in one cycle, only the last key will be handled...
+         * Is called when a key is pressed. 
+         * The key is put in the queue, the game loop will execute the event.
+         * <br/>
+         * NOTE: This way of handling keys ensures synchronisation with the game loop,
+         * important for collision detection. Keys pressed in one cycle are all handled,
+         * in the order in which they were pressed.
+         * 
+         * @param keyCode
+         *                represents the pressed key
+         */
+        protected void keyPressed(int keyCode)
+        {
+            keys.offer(KeyEventQueue.PRESSED, getGameAction(keyCode), System.currentTimeMillis());
+        }
+
+        /**
+         * A call to this method is made when a key is released. 
+         * The release is put in the queue.
+         */
+        protected void keyReleased(int keyCode)
+        {
+            keys.offer(KeyEventQueue.RELEASED, getGameAction(keyCode), System.currentTimeMillis());
+        }
+
+        /**
+         * A call to this method is made when a key is held down long enough for the phone
+         * to repeat it. The repeat is put in the queue.
+         */
+        protected void keyRepeated(int keyCode)
+        {
+            keys.offer(KeyEventQueue.REPEATED, getGameAction(keyCode), System.currentTimeMillis());
+        }
+        
+        /**
+         * Clears the keys. Method stopGame() calls this to make sure
+         * there will be no key events after resume game.
+         */
+        private void clearKey()
+        {
+            keyHeld = false;
+            keys.clear();
+        }
+        
+        /**
+         * Handle the key events of this cycle. Every key press is an action, even when more keys were
+         * pressed in one cycle. In a cycle without a key press, a key that is still held repeats its action.
+         * 
+         * @throws GameException
+         *                 if there is no player
+         */
+        private void handleKey() throws GameException
+        {
+            if (player == null)
+            {
+                throw new GameException("No GamePlayer present, cannot respond to keyboard events");
+            }
+            boolean replay = false;
+            if (replaying != null)
+            {	// the recorded actions replace the keys of the phone
+                if (replaying.isFinished(cycleNumber))
+                {
+                    replaying = null;
+                } else
+                {
+                    replay = true;
+                }
+            }
+            boolean pressed = false;
+            for (int n = 0; n < MAX_KEY_EVENTS_PER_CYCLE && keys.next(); n++)
+            {
+                if (replay)
+                {	// the phone's keys are not used
+                    continue;
+                }
+                if (keys.getType() == KeyEventQueue.RELEASED)
+                {
+                    keyHeld = false;
+                } else
+                {	// pressed or repeated, the key is down
+                    spelAction = keys.getAction();
+                    keyHeld = true;
+                    if (keys.getType() == KeyEventQueue.PRESSED)
+                    {
+                        keyAction(spelAction, true);
+                        pressed = true;
+                        measureKeyToAction(keys.getTime());
+                    }
+                }
+            }
+            if (replay)
+            {
+                for (int i = replaying.find(cycleNumber); i >= 0; i = replaying.find(cycleNumber))
+                {
+                    keyAction(replaying.getAction(i), replaying.isNewKey(i) || !replaying.isKeyHeld(i));
+                    pressed = true;
+                }
+            } else if (!pressed && keyHeld)
+            {	// repeat the action of the key that is held
+                keyAction(spelAction, false);
+                pressed = true;
+            }
+            if (!pressed)
+            {
+                player.setKeyVars(false, false);
+            }
+        }
+
+        /**
+         * Measure the time from a key press to its action, and remember the key press
+         * to measure the time until it is on the screen
          * 
-         * @param keyCode
-         *                represents the pressed key
+         * @param keyTime
+         *                the time of the key press
          */
-        protected void keyPressed(int keyCode)
+        private void measureKeyToAction(long keyTime)
         {
-            spelAction = getGameAction(keyCode);
-            newKey = true;
-            keyHeld = true;
+            GameProfiler p = profiler;
+            if (p != null)
+            {
+                p.record(GameProfiler.KEY_TO_ACTION, (int) (System.currentTimeMillis() - keyTime));
+                if (actionKeyTime == 0)
+                {
+                    actionKeyTime = keyTime;
+                }
+            }
         }
 
         /**
-         * A call to this method is made when a key is released. 
-         * Switches keyHeld boolean off
+         * The game loop is about to ask for a paint: the key presses handled since the last
+         * paint will be on the screen when it is done.
          */
-        protected void keyReleased(int keyCode)
+        private void handOverKeyTime()
         {
-            keyHeld = false;
+            if (actionKeyTime != 0)
+            {	// a paint that has not been done yet keeps the older key
+                if (frameKeyTime == 0)
+                {
+                    frameKeyTime = actionKeyTime;
+                }
+                actionKeyTime = 0;
+            }
         }
-        
+
         /**
-         * Clears the key-booleans. Method stopGame() calls this to make sure
-         * there will be no key events after resume game.
+         * Perform the action of a key, and record it
+         * 
+         * @param action
+         *                the game action of the key
+         * @param newKey
+         *                true if the key has just been pressed, false if it is held
          */
-        private void clearKey()
-        {
-            keyHeld = false;
-            newKey = false;
-        }
-        
-        private void handleKey() throws GameException
+        private void keyAction(int action, boolean newKey)
         {
-            if (player != null)
-            {
-            	player.setKeyVars( (newKey || keyHeld), (keyHeld && !newKey));
-            	if ( newKey || keyHeld )
-            	{
-            		performAction(spelAction);
-            		newKey = false;
-            	}
-            } else
+            if (recording != null)
             {
-                throw new GameException("No GamePlayer present, cannot respond to keyboard events");
+                recording.record(cycleNumber, action, newKey, !newKey);
             }
+            player.setKeyVars(true, !newKey);
+            performAction(action);
         }
 
         /**
@@ -1363,23 +2557,71 @@ public abstract class GameEngine extends MIDlet implements Runnable
         }
 
         /**
-         * Render the evironment map (a.k.a tiledmap) on the canvas
+         * Set the environment map
+         * 
+         * @param tiles the tiles
+         * @param xPosition the horizontal start position of the map
+         * @param yPosition the vertical start position of the map
+         */
+        private void setMap(TileMap tiles, int xPosition, int yPosition)
+        {
+            mapStartX = xPosition;
+            mapStartY = yPosition;
+            mapHeight = tiles.rows;
+            mapWidth = tiles.columns;
+            map = tiles;
+            dirty.addAll();
+            changedTiles.addAll();
+        }
+
+        /**
+         * Load the chunks of the environment map around the viewport, if they are loaded when needed.
+         * Called by the game loop, at the start of every cycle, so they are there when the screen is painted.
+         */
+        private void keepTiles()
+        {
+            TileMap m = map;
+            if (m != null && m.isLazy() && tileWidth > 0 && tileHeight > 0)
+            {
+                int left = divdown(viewPortX - mapStartX, tileWidth);
+                int top = divdown(viewPortY - mapStartY, tileHeight);
+                int right = divdown(viewPortX + screenWidth - 1 - mapStartX, tileWidth);
+                int bottom = divdown(viewPortY + screenHeight - 1 - mapStartY, tileHeight);
+                if (m.keep(left, top, right, bottom))
+                {	// the screen was painted with tiles missing (the viewport jumped)
+                    dirty.addAll();
+                    changedTiles.addAll();
+                }
+            }
+        }
+
+        /**
+         * Render the evironment map (a.k.a tiledmap) on the canvas, the tiles in the given
+         * rectangle of the screen
          * 
          * @param g
          *                the canvas it's graphics object
+         * @param x
+         *                x of the rectangle on the screen
+         * @param y
+         *                y of the rectangle on the screen
+         * @param w
+         *                width of the rectangle
+         * @param h
+         *                height of the rectangle
          */
-        private void drawTileEnvironment(Graphics g)
+        private void drawTileEnvironment(Graphics g, int x, int y, int w, int h)
         {
             if (map != null && tileImages != null)
             {
                 int tileType;
                 // calculate horizontal index of first tile to be drawn. not below zero!
-                int firstXindex = Math.max(divdown(viewPortX-mapStartX,tileWidth),0);
+                int firstXindex = Math.max(divdown(viewPortX+x-mapStartX,tileWidth),0);
                 // calculate last index of tile to be drawn in horizontal direction, stay inside map!
-                int lastXindex = Math.min(divdown(viewPortX+screenWidth-mapStartX,tileWidth)+1, mapWidth);
+                int lastXindex = Math.min(divdown(viewPortX+x+w-mapStartX,tileWidth)+1, mapWidth);
                 // likewise in vertical direction
-                int firstYindex = Math.max(divdown(viewPortY-mapStartY,tileHeight),0);
-                int lastYindex = Math.min(divdown(viewPortY+screenHeight-mapStartY,tileHeight)+1, mapHeight);
+                int firstYindex = Math.max(divdown(viewPortY+y-mapStartY,tileHeight),0);
+                int lastYindex = Math.min(divdown(viewPortY+y+h-mapStartY,tileHeight)+1, mapHeight);
                 // screenpos of first tile to be drawn
                 int yPos = mapStartY + tileHeight*firstYindex;
                 int xPos; // inside loop
@@ -1389,7 +2631,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
                     xPos = mapStartX + tileWidth*firstXindex;
                     for (int Xindex = firstXindex; Xindex < lastXindex; Xindex++)
                     {
-                        tileType = map[Yindex][Xindex];
+                        tileType = map.peek(Xindex, Yindex);
                         if (tileType != NO_TILE)
                         {
                             g.drawImage(tileImages[tileType - 1], xPos - viewPortX, yPos - viewPortY, Graphics.TOP
@@ -1402,6 +2644,177 @@ public abstract class GameEngine extends MIDlet implements Runnable
             }
         }
 
+        /**
+         * Draw the background and the tiles in a rectangle of the screen, from the tile cache
+         * if it is used.
+         * 
+         * @param g
+         *                the canvas it's graphics object
+         * @param x
+         *                x of the rectangle on the screen
+         * @param y
+         *                y of the rectangle on the screen
+         * @param w
+         *                width of the rectangle
+         * @param h
+         *                height of the rectangle
+         */
+        private void drawBackgroundAndTiles(Graphics g, int x, int y, int w, int h)
+        {
+            // the tiles are drawn on the color in the cache, a background image can't be
+            if (tileCache && backgroundImage == null && map != null && tileImages != null && updateTileCache())
+            {
+                drawTileCache(g);
+            } else
+            {
+                drawBackground(g);
+                drawTileEnvironment(g, x, y, w, h);
+            }
+        }
+
+        /**
+         * Bring the tile cache up to date with the viewport and the changed tiles. The first time,
+         * and after a change of the tiles, the map or the background color, all tiles are drawn.
+         * 
+         * @return true if the cache can be used, false if there is not enough memory for it
+         */
+        private boolean updateTileCache()
+        {
+            int columns = screenWidth / tileWidth + 2;
+            int rows = screenHeight / tileHeight + 2;
+            int firstColumn = divdown(viewPortX - mapStartX, tileWidth);
+            int firstRow = divdown(viewPortY - mapStartY, tileHeight);
+            int n = changedTiles.take(changedRects);
+            if (tileCacheImage == null || tileCacheImage.getWidth() != columns * tileWidth
+                    || tileCacheImage.getHeight() != rows * tileHeight)
+            {	// (new) tile size: (new) image
+                tileCacheImage = null;
+                tileCacheGraphics = null;
+                try
+                {
+                    tileCacheImage = Image.createImage(columns * tileWidth, rows * tileHeight);
+                } catch (OutOfMemoryError e)
+                {
+                    tileCache = false;
+                    return false;
+                }
+                tileCacheGraphics = tileCacheImage.getGraphics();
+                cacheColumns = columns;
+                cacheRows = rows;
+                n = -1;
+            }
+            int dx = firstColumn - cacheFirstColumn;
+            int dy = firstRow - cacheFirstRow;
+            cacheFirstColumn = firstColumn;
+            cacheFirstRow = firstRow;
+            if (n < 0 || Math.abs(dx) >= columns || Math.abs(dy) >= rows)
+            {	// nothing in the cache can be used
+                drawCacheCells(firstColumn, firstRow, columns, rows);
+                return true;
+            }
+            // the columns and rows that scrolled into view take the place of the ones that left
+            if (dx > 0)
+                drawCacheCells(firstColumn + columns - dx, firstRow, dx, rows);
+            else if (dx < 0)
+                drawCacheCells(firstColumn, firstRow, -dx, rows);
+            if (dy > 0)
+                drawCacheCells(firstColumn, firstRow + rows - dy, columns, dy);
+            else if (dy < 0)
+                drawCacheCells(firstColumn, firstRow, columns, -dy);
+            // the tiles changed by changeTile, if they are in the cache
+            for (int r = 0; r < n; r++)
+            {
+                int first = Math.max(divdown(changedRects[4 * r] - mapStartX, tileWidth), firstColumn);
+                int last = Math.min(divdown(changedRects[4 * r] + changedRects[4 * r + 2] - 1 - mapStartX, tileWidth),
+                        firstColumn + columns - 1);
+                int top = Math.max(divdown(changedRects[4 * r + 1] - mapStartY, tileHeight), firstRow);
+                int bottom = Math.min(divdown(changedRects[4 * r + 1] + changedRects[4 * r + 3] - 1 - mapStartY, tileHeight),
+                        firstRow + rows - 1);
+                if (first <= last && top <= bottom)
+                {
+                    drawCacheCells(first, top, last - first + 1, bottom - top + 1);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Draw tiles in the tile cache, on the background color
+         * 
+         * @param firstColumn
+         *                the first tile column, in the map
+         * @param firstRow
+         *                the first tile row, in the map
+         * @param columns
+         *                the number of columns
+         * @param rows
+         *                the number of rows
+         */
+        private void drawCacheCells(int firstColumn, int firstRow, int columns, int rows)
+        {
+            Graphics cg = tileCacheGraphics;
+            cg.setColor(red, green, blue);
+            for (int row = firstRow; row < firstRow + rows; row++)
+            {
+                int cy = wrap(row, cacheRows) * tileHeight;
+                for (int column = firstColumn; column < firstColumn + columns; column++)
+                {
+                    int cx = wrap(column, cacheColumns) * tileWidth;
+                    // a tile must not stick out into its neighbour, that may be at the other side of the map
+                    cg.setClip(cx, cy, tileWidth, tileHeight);
+                    cg.fillRect(cx, cy, tileWidth, tileHeight);
+                    if (row >= 0 && row < mapHeight && column >= 0 && column < mapWidth)
+                    {
+                        byte tile = map.peek(column, row);
+                        if (tile != NO_TILE)
+                        {
+                            cg.drawImage(tileImages[tile - 1], cx, cy, Graphics.TOP | Graphics.LEFT);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Draw the tile cache on the screen. Because the cache is a ring, the image is drawn
+         * up to four times, next to each other; the clip of g keeps what is not needed out.
+         * 
+         * @param g
+         *                the canvas it's graphics object
+         */
+        private void drawTileCache(Graphics g)
+        {
+            int w = cacheColumns * tileWidth;
+            int h = cacheRows * tileHeight;
+            // screen position of the image when the first column and row are at their place
+            int x = mapStartX + cacheFirstColumn * tileWidth - viewPortX - wrap(cacheFirstColumn, cacheColumns) * tileWidth;
+            int y = mapStartY + cacheFirstRow * tileHeight - viewPortY - wrap(cacheFirstRow, cacheRows) * tileHeight;
+            g.drawImage(tileCacheImage, x, y, Graphics.TOP | Graphics.LEFT);
+            if (x + w < screenWidth)
+                g.drawImage(tileCacheImage, x + w, y, Graphics.TOP | Graphics.LEFT);
+            if (y + h < screenHeight)
+            {
+                g.drawImage(tileCacheImage, x, y + h, Graphics.TOP | Graphics.LEFT);
+                if (x + w < screenWidth)
+                    g.drawImage(tileCacheImage, x + w, y + h, Graphics.TOP | Graphics.LEFT);
+            }
+        }
+
+        /**
+         * Get the position of a tile row or column in the ring of the tile cache
+         * 
+         * @param index
+         *                the row or column, in the map
+         * @param size
+         *                the number of rows or columns in the cache
+         * @return index modulo size, between 0 and size-1
+         */
+        private int wrap(int index, int size)
+        {
+            int m = index % size;
+            return m < 0 ? m + size : m;
+        }
+
         /**
          * Draw a background image (if not equal to <tt>null</tt>) or a fixed color on the canvas.
          * 
@@ -1426,14 +2839,51 @@ public abstract class GameEngine extends MIDlet implements Runnable
         /**
          * Check if the given gameitem lies withi the viewport
          * 
-         * @param item
-         *                the gameitem that needs to be checked
+         * @param i
+         *                the index of the gameitem that needs to be checked, in the copy of the item list
          * @return true, if it lies in the viewport, false otherwise
          */
-        private final boolean isInViewPort(GameItem item)
+        private final boolean isInViewPort(int i)
+        {
+            return paintX[i] + paintW[i] > viewPortX && paintY[i] + paintH[i] > viewPortY
+                    && paintX[i] < viewPortX + screenWidth && paintY[i] < viewPortY + screenHeight;
+        }
+
+        /**
+         * Copy the items, their positions, frame sizes and flags from the item list, for this frame.
+         * The lock of the list is only held while copying, so the game loop does not have to wait
+         * while the items, the dashboard and the tiles are painted. The arrays of the copy grow 
+         * with the list.
+         */
+        private void copyItems()
         {
-            return item.getX() + item.getFrameWidth() > viewPortX && item.getY() + item.getFrameHeight() > viewPortY
-                    && item.getX() < viewPortX + screenWidth && item.getY() < viewPortY + screenHeight;
+            ItemStore st = gameItems;
+            // the game loop may be cleaning up the item list at this moment
+            synchronized (st)
+            {
+                int n = st.size;
+                if (paintItems.length < n)
+                {
+                    int length = st.items.length;
+                    paintItems = new GameItem[length];
+                    paintX = new int[length];
+                    paintY = new int[length];
+                    paintW = new int[length];
+                    paintH = new int[length];
+                    paintFlags = new int[length];
+                }
+                System.arraycopy(st.items, 0, paintItems, 0, n);
+                System.arraycopy(st.x, 0, paintX, 0, n);
+                System.arraycopy(st.y, 0, paintY, 0, n);
+                System.arraycopy(st.width, 0, paintW, 0, n);
+                System.arraycopy(st.height, 0, paintH, 0, n);
+                System.arraycopy(st.flags, 0, paintFlags, 0, n);
+                for (int i = n; i < nrPaintItems; i++)
+                {   // no references to items that have left the game
+                    paintItems[i] = null;
+                }
+                nrPaintItems = n;
+            }
         }
         
         /**
@@ -1445,32 +2895,166 @@ public abstract class GameEngine extends MIDlet implements Runnable
          */
         public void paint(Graphics g)
         {
-            // request offscreen buffer
-            Graphics offScreenGraphics = offScreenBuffer.getGraphics();
-            // draw the background color/image
-            drawBackground(offScreenGraphics);
+            GameProfiler p = profiler;
+            long time = ( p == null ? 0 : System.currentTimeMillis() );
+            // the items and the dashboard leave their clip behind
+            offScreenGraphics.setClip(0, 0, screenWidth, screenHeight);
+            copyItems();
+            if (dirtyRectangles)
+            {
+                paintDirty(offScreenGraphics);
+            } else
+            {
+                paintAll(offScreenGraphics, true);
+            }
+
+            // put the contents of the offscreen buffer to screen
+            g.drawImage(offScreenBuffer, 0, 0, Graphics.TOP | Graphics.LEFT);
+            if ( p != null )
+            {
+                long now = p.lap(GameProfiler.PAINT, time);
+                long keyTime = frameKeyTime;
+                if (keyTime != 0)
+                {	// the action of this key is on the screen now
+                    p.record(GameProfiler.KEY_TO_FRAME, (int) (now - keyTime));
+                    frameKeyTime = 0;
+                }
+            }
+        }
+
+        /**
+         * Paint the whole screen in the offscreen buffer
+         * 
+         * @param g
+         *                the graphics of the offscreen buffer
+         * @param animate
+         *                true to animate the items, false if this has been done
+         */
+        private void paintAll(Graphics g, boolean animate)
+        {
             // Set viewport coordinates according to player
             updateViewPort();
-            // draw the visible parts of tile environment
-            drawTileEnvironment(offScreenGraphics);
+            // draw the background color/image and the visible parts of tile environment
+            drawBackgroundAndTiles(g, 0, 0, screenWidth, screenHeight);
             
             // NOTE: order of paint: static items, moveable items, player. 
             // paint game items, 
-            for (Enumeration e = gameItems.elements() ; e.hasMoreElements() ;)
-            {   GameItem gameItem = (GameItem) e.nextElement();
-               	// Make sure only items within the viewport are drawn others can't be seen anyway
-            	if (isInViewPort(gameItem))
+            for (int i = 0; i < nrPaintItems; i++)
+            {   // Make sure only items within the viewport are drawn others can't be seen anyway
+            	if (isInViewPort(i))
                 {
-                	gameItem.animate();
-                	gameItem.paint(offScreenGraphics, viewPortX, viewPortY);
+                    GameItem gameItem = paintItems[i];
+                    if (animate)
+                    	gameItem.animate();
+                    if ((paintFlags[i] & ItemStore.VISIBLE) != 0)
+                    	gameItem.paint(g, paintX[i] - viewPortX, paintY[i] - viewPortY, paintW[i], paintH[i]);
                 }
             }
             // draws the (optional) dashboard
             if (dashboard != null)
-                dashboard.paint(offScreenGraphics);
+                dashboard.paint(g);
+        }
 
-            // put the contents of the offscreen buffer to screen
-            g.drawImage(offScreenBuffer, 0, 0, Graphics.TOP | Graphics.LEFT);
+        /**
+         * Paint only the parts of the screen that have changed since the last frame. The rest of the
+         * offscreen buffer still holds the last frame. When the viewport has moved, or there are too many
+         * changes, the whole screen is painted.
+         * 
+         * @param g
+         *                the graphics of the offscreen buffer
+         */
+        private void paintDirty(Graphics g)
+        {
+            updateViewPort();
+            if (viewPortX != paintedViewPortX || viewPortY != paintedViewPortY)
+            {	// everything moves on the screen
+                dirty.addAll();
+                paintedViewPortX = viewPortX;
+                paintedViewPortY = viewPortY;
+            }
+            // find the items that look different, animation included
+            for (int i = 0; i < nrPaintItems; i++)
+            {
+                GameItem gameItem = paintItems[i];
+                boolean inView = isInViewPort(i);
+                if (inView)
+                    gameItem.animate();
+                gameItem.trackPainted(dirty, paintX[i], paintY[i], paintW[i], paintH[i],
+                        inView && (paintFlags[i] & ItemStore.VISIBLE) != 0);
+            }
+            if (dashboard != null)
+            {	// the dashboard is fixed on the screen, not in the world
+                int changes = dashboard.takeChanges();
+                if ((changes & GameDashboard.CHANGED_LAYOUT) != 0)
+                    dirty.addAll();
+                else if (changes != 0)
+                    dirty.add(dashboard.dashX + viewPortX, dashboard.dashY + viewPortY, dashboard.dashW, dashboard.dashH);
+            }
+            int n = dirty.take(dirtyRects);
+            // when most of the screen is dirty, it is faster to paint it all at once
+            int area = 0;
+            for (int r = 0; r < n; r++)
+            {
+                area += dirtyRects[4 * r + 2] * dirtyRects[4 * r + 3];
+            }
+            if (n < 0 || area > screenWidth * screenHeight / 2)
+            {
+                g.setClip(0, 0, screenWidth, screenHeight);
+                paintAll(g, false);
+                return;
+            }
+            for (int r = 0; r < n; r++)
+            {	// to the screen, inside the screen
+                int x = Math.max(dirtyRects[4 * r] - viewPortX, 0);
+                int y = Math.max(dirtyRects[4 * r + 1] - viewPortY, 0);
+                int w = Math.min(dirtyRects[4 * r] - viewPortX + dirtyRects[4 * r + 2], screenWidth) - x;
+                int h = Math.min(dirtyRects[4 * r + 1] - viewPortY + dirtyRects[4 * r + 3], screenHeight) - y;
+                if (dashboard != null && isCollision(x, y, w, h, dashboard.dashX, dashboard.dashY, dashboard.dashW, dashboard.dashH))
+                {	// the dashboard is painted over everything, and as a whole
+                    int x2 = Math.max(x + w, dashboard.dashX + dashboard.dashW);
+                    int y2 = Math.max(y + h, dashboard.dashY + dashboard.dashH);
+                    x = Math.min(x, dashboard.dashX);
+                    y = Math.min(y, dashboard.dashY);
+                    w = x2 - x;
+                    h = y2 - y;
+                }
+                if (w > 0 && h > 0)
+                {
+                    paintRectangle(g, x, y, w, h);
+                }
+            }
+        }
+
+        /**
+         * Paint a rectangle of the screen: background, tiles, items and dashboard
+         * 
+         * @param g
+         *                the graphics of the offscreen buffer
+         * @param x
+         *                x of the rectangle on the screen
+         * @param y
+         *                y of the rectangle on the screen
+         * @param w
+         *                width of the rectangle
+         * @param h
+         *                height of the rectangle
+         */
+        private void paintRectangle(Graphics g, int x, int y, int w, int h)
+        {
+            g.setClip(x, y, w, h);
+            drawBackgroundAndTiles(g, x, y, w, h);
+            for (int i = 0; i < nrPaintItems; i++)
+            {
+                if ((paintFlags[i] & ItemStore.VISIBLE) != 0
+                        && isCollision(x + viewPortX, y + viewPortY, w, h, paintX[i], paintY[i], paintW[i], paintH[i]))
+                {
+                    paintItems[i].paint(g, paintX[i] - viewPortX, paintY[i] - viewPortY, paintW[i], paintH[i], x, y, w, h);
+                }
+            }
+            if (dashboard != null && isCollision(x, y, w, h, dashboard.dashX, dashboard.dashY, dashboard.dashW, dashboard.dashH))
+            {
+                dashboard.paint(g);
+            }
         }
 
         /**
@@ -1612,43 +3196,6 @@ public abstract class GameEngine extends MIDlet implements Runnable
         }
 
 
-        /**
-         * Check if a moveable gameitem collides with another (movable or static) gameitem
-         * Only collisions with items that are before the currentItem in the Items Vector will
-         * be ckecked. In this way there will be no double checking, only a-b, not b-a.
-         * 
-         * @param gameItem
-         *                the item that needs to be check for collisions
-         * @param limit
-         * 			the index of currentItem in the GameItems Vector
-         */
-        private final void checkForItemCollisions(MoveableGameItem currentItem, int limit)
-        {
-            // loop through all other (static and moveable) gameitems that are alive
-            for (int i = 0; i < limit; i++)
-            {
-                GameItem anotherItem = (GameItem) gameItems.elementAt(i);
-                if ( anotherItem.isActive() )
-                {
-                    // check if there is a collision between the current moveable
-                    // item and another gameitem
-                    if (	isCollision(currentItem.getX(), currentItem.getY(), 
-                            currentItem.getFrameWidth(), currentItem.getFrameHeight(), 
-                            anotherItem.getX(), anotherItem.getY(), 
-                            anotherItem.getFrameWidth(), anotherItem.getFrameHeight())
-                       )
-                    {
-                        // notify both game item of the collision that has occured
-                        currentItem.collisionOccured(anotherItem);
-                        if ( anotherItem instanceof MoveableGameItem )
-                        {
-                        	((MoveableGameItem)anotherItem).collisionOccured(currentItem);
-                        }
-                    }
-                }
-            }
-        }
-
         /**
          * This method solves the problem that (int) (a/b)*b works as a round down to multiples of b for positive ints
          * a, and as a round up for negative ints. Sorry for the unusual variable names. They arose out of frustration.
@@ -1674,17 +3221,15 @@ public abstract class GameEngine extends MIDlet implements Runnable
          * 
          * @param gameItem the MoveableGameItem involved
          * @param xindex the x coordinate of the column of tiles
-         * @param xf the part of the move thas has been done upto the collision
+         * @param ypos the y-coordinate of the gameItem at the moment of collision
          * @param xc the x-coordinate of the gameItem at the moment of collision
          */
-        private void handleHorizontalCollision(MoveableGameItem gameItem, int xindex, double xf, int xc)
+        private void handleHorizontalCollision(MoveableGameItem gameItem, int xindex, int ypos, int xc)
         {	// no collision if xindex outside map
             if ( (xindex < 0) || (xindex >= mapWidth) )
                 return;
             // initialize tilepattern at zero
             int collisionPattern = 0;
-            // find y that corresponds to the part of the x-displacement until collision
-            int ypos = gameItem.getMatchingY(xf);
             // find yindex of tile where top pixel is 
             // limit to range of map. Note: range of xindex has alresdy been checked
             int firsttile = Math.max(0, divdown(ypos-mapStartY, tileHeight));
@@ -1693,14 +3238,16 @@ public abstract class GameEngine extends MIDlet implements Runnable
             // loop through y-range
             for (int yindex = firsttile; yindex <=lasttile; yindex++)
             {	// see if there is a tile at the current position
-                if (map[yindex][xindex] != NO_TILE)
+                byte tile = map.get(xindex, yindex);
+                if (tile != NO_TILE)
                 { 	// switch bit of this tile on in pattern
-                 	collisionPattern = collisionPattern | (1 << (map[yindex][xindex] - 1));
+                 	collisionPattern = collisionPattern | (1 << (tile - 1));
                 }
             }
             if (collisionPattern != 0)
             { 	// notify the current moveable game item of the collision that has occured
                 // System.out.println("####colX, pat: " + collisionPattern + ", pos:" + xc);
+                tileCollisions++;
                 gameItem.collisionOccured(collisionPattern, true, xc);
             } //  else
                 // System.out.println("####colX, no tiles, pos:" + xc);
@@ -1715,27 +3262,28 @@ public abstract class GameEngine extends MIDlet implements Runnable
          * 
          * @param gameItem the MoveableGameItem involved
          * @param yindex the y coordinate of the row of tiles
-         * @param yf the part of the move thas has been done upto the collision
+         * @param xpos the x-coordinate of the gameItem at the moment of collision
          * @param yc the y-coordinate of the gameItem at the moment of collision
          */
-         private void handleVerticalCollision(MoveableGameItem gameItem, int yindex, double yf, int yc)
+         private void handleVerticalCollision(MoveableGameItem gameItem, int yindex, int xpos, int yc)
          {	// comments like handleHorizontalCollision
             if ( (yindex < 0) || (yindex >= mapHeight) )
                 return;
             int collisionPattern = 0;
-            int xpos = gameItem.getMatchingX(yf);
             int firsttile = Math.max(0, divdown(xpos-mapStartX, tileWidth));
             int lasttile = Math.min(mapWidth-1, divdown(xpos + gameItem.getFrameWidth()-1-mapStartX, tileWidth));
             for (int xindex = firsttile; xindex <= lasttile; xindex++)
             {
-                if (map[yindex][xindex] != NO_TILE)
+                byte tile = map.get(xindex, yindex);
+                if (tile != NO_TILE)
               	{ 
-                  	collisionPattern = collisionPattern | (1 << (map[yindex][xindex] - 1));
+                  	collisionPattern = collisionPattern | (1 << (tile - 1));
                 }
             }
             if (collisionPattern != 0)
             { 	// notify the current moveable game item of the collision that has occured
                 // System.out.println("####colY, pat: " + collisionPattern + ", pos:" + yc);
+                tileCollisions++;
                 gameItem.collisionOccured(collisionPattern, false, yc);
             } // else
                 // System.out.println("####colY, no tiles, pos:" + yc);
@@ -1800,6 +3348,11 @@ public abstract class GameEngine extends MIDlet implements Runnable
                 itemYatCollision = collisionY - gameItem.getFrameHeight();
             }
             // System.out.println("col5, ver?: ytile:" + yTileIndex + ", colY:" + collisionY+ ", itY:" + itemYatCollision);
+            if (fixedPoint)
+            {	// same loop, with integers only
+                checkForTileCollisionsFixed(gameItem, moveleft, moveup, xTileIndex, yTileIndex, itemXatCollision, itemYatCollision);
+                return;
+            }
             // calculate the part of move that has been done until the collision: (colx - prevx)/(newx - prevx)
             // Note: if factor >=1, the collision position is further away than the move. Therefore it has not
             // been reached and ther is no collision. This property will be used as a collision test.
@@ -1811,7 +3364,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
             {	// handle collision that comes first, that is the lower factor (<1 guaranteed by loop criterion)
                	if (xFactor <= yFactor)
               	{ 	// horizontal collision first
-                   	handleHorizontalCollision(gameItem, xTileIndex, xFactor, itemXatCollision);
+                   	handleHorizontalCollision(gameItem, xTileIndex, gameItem.getMatchingY(xFactor), itemXatCollision);
                     if ( moveleft )
                     {	// move collision gridline to the left for next check
                         xTileIndex--;
@@ -1825,7 +3378,7 @@ public abstract class GameEngine extends MIDlet implements Runnable
                     }
                 } else			
                 {	// vertical collision first
-                    handleVerticalCollision(gameItem, yTileIndex, yFactor, itemYatCollision);
+                    handleVerticalCollision(gameItem, yTileIndex, gameItem.getMatchingX(yFactor), itemYatCollision);
                     // check if there is still a horizontal collision
                     if ( moveup )
                     {	// move collision gridline up for next check
@@ -1847,6 +3400,55 @@ public abstract class GameEngine extends MIDlet implements Runnable
                 //        + MathFloat.toString(yFactor, 2, 2));
             }
         }
+
+        /**
+         * The collision loop of checkForTileCollisions, with the factors as 16.16 fixed-point numbers
+         * instead of doubles. See checkForTileCollisions for comments.
+         * 
+         * @param gameItem the item that needs to be checked for collisions
+         * @param moveleft true if the item moves left
+         * @param moveup true if the item moves up
+         * @param xTileIndex index of the first column of tiles the item may run into
+         * @param yTileIndex index of the first row of tiles the item may run into
+         * @param itemXatCollision x of the item at a collision with that column
+         * @param itemYatCollision y of the item at a collision with that row
+         */
+        private void checkForTileCollisionsFixed(MoveableGameItem gameItem, boolean moveleft, boolean moveup, 
+                int xTileIndex, int yTileIndex, int itemXatCollision, int itemYatCollision)
+        {
+            int xFactor = gameItem.getXFactorFixed(itemXatCollision);
+            int yFactor = gameItem.getYFactorFixed(itemYatCollision);
+            while ( xFactor < MoveableGameItem.FIXED_ONE || yFactor < MoveableGameItem.FIXED_ONE )
+            {
+               	if (xFactor <= yFactor)
+              	{
+                   	handleHorizontalCollision(gameItem, xTileIndex, gameItem.getMatchingYFixed(xFactor), itemXatCollision);
+                    if ( moveleft )
+                    {
+                        xTileIndex--;
+                        itemXatCollision = (xTileIndex + 1) * tileWidth + mapStartX;
+                    } else
+                    {
+                        xTileIndex++;
+                        itemXatCollision = xTileIndex * tileWidth + mapStartX - gameItem.getFrameWidth();
+                    }
+                } else			
+                {
+                    handleVerticalCollision(gameItem, yTileIndex, gameItem.getMatchingXFixed(yFactor), itemYatCollision);
+                    if ( moveup )
+                    {
+                        yTileIndex--;
+                        itemYatCollision = (yTileIndex + 1) * tileHeight + mapStartY;
+                    } else
+                    {
+                        yTileIndex++;
+                        itemYatCollision = yTileIndex * tileHeight + mapStartY - gameItem.getFrameHeight();
+                    }
+                }
+                xFactor = gameItem.getXFactorFixed(itemXatCollision);
+                yFactor = gameItem.getYFactorFixed(itemYatCollision);
+            }
+        }
     
         private int findTilesAt(int x, int y, int w, int h)
         {	// this is handle horizontal & vertical collisions combined, 
@@ -1862,9 +3464,10 @@ public abstract class GameEngine extends MIDlet implements Runnable
             {	for (int tileY = ystart; tileY <= yend; tileY++)
             	{	for (int tileX = xstart; tileX <= xend; tileX++)
                 	{	
-                	    if (map[tileY][tileX] != NO_TILE)
+                	    byte tile = map.get(tileX, tileY);
+                	    if (tile != NO_TILE)
                         { // switch bit of this tile on in pattern
-                	        collisionPattern = collisionPattern | (1 << (map[tileY][tileX] - 1));
+                	        collisionPattern = collisionPattern | (1 << (tile - 1));
                      	}
                 	}
                 }
@@ -1872,53 +3475,4 @@ public abstract class GameEngine extends MIDlet implements Runnable
             return collisionPattern;
         }
     }
-
-    /**
-     * The GameTimer handles the so-called 'alarm events' inside the game.
-     * 
-     * @author Tim Prijn & Richard Kettelerij
-     * @version 1.0
-     */
-    private class GameTimer
-    {
-        private int alarmSetNumber;
-
-        private int id;
-
-        private IAlarmListener parent;
-
-        /**
-         * Constucts an instance of this class
-         * 
-         * @param time
-         * @param id
-         * @param listener
-         */
-        public GameTimer(int time, int id, IAlarmListener listener)
-        {
-            this.alarmSetNumber = time;
-            this.id = id;
-            this.parent = listener;
-        }
-
-        /**
-         * Returns the number of steps at which a requested alarm must be set
-         * 
-         * @return int
-         */
-        public int getEndCycleNumber()
-        {
-            return alarmSetNumber;
-        }
-
-        public IAlarmListener getListener()
-        {
-            return parent;
-        }
-
-        public int getID()
-        {
-            return id;
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,325 @@
+/*
+ * File: 	GameImageCache.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Hashtable;
+import javax.microedition.lcdui.Image;
+
+/**
+ * This class features a number of static methods to share images between GameItems and tiles.
+ * Every image file is decoded only once: thirty strawberries share one image.
+ * <p>
+ * The cache counts the users of every image. GameItems and tiles get their images from the cache
+ * automatically (setImage and setTileImages), and the GameEngine releases the image of an item when
+ * the item leaves the game. An image without users stays in the cache, so it need not be decoded again
+ * when a new item needs it, until the cache uses more memory than its budget. Then the image that
+ * has not been used for the longest time is dropped.
+ * <p>
+ * The memory use of an image is estimated as 4 bytes per pixel.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public final class GameImageCache
+{
+    /**
+     * An image in the cache
+     */
+    private static final class Entry
+    {
+        String path;
+
+        Image image;
+
+        int refs;
+
+        int width, height;
+
+        int bytes;
+
+        /**
+         * Neighbours in the list of unused entries
+         */
+        Entry prev, next;
+    }
+
+    /**
+     * Default memory budget
+     */
+    private static final int DEFAULT_BUDGET = 128 * 1024;
+
+    /**
+     * The images, by path
+     */
+    private static Hashtable entries = new Hashtable();
+
+    /**
+     * List of images without users, least recently used first
+     */
+    private static Entry unusedHead, unusedTail;
+
+    /**
+     * Maximal memory use, in bytes. Images in use are never dropped, so the cache may use more.
+     */
+    private static int budget = DEFAULT_BUDGET;
+
+    /**
+     * Estimated memory use of all images in the cache
+     */
+    private static int cachedBytes;
+
+    /**
+     * Statistics
+     */
+    private static int hits, misses, decodedBytes;
+
+    /**
+     * Constructs an instance of this class
+     */
+    private GameImageCache()
+    {
+        // do nothing
+    }
+
+    /**
+     * Get the image with the given path, and count one more user. The image is decoded if it
+     * isn't in the cache. Call release when the image is no longer used.
+     *
+     * @param path
+     *                relative location to the image file
+     * @return the image
+     * @throws GameException
+     *                 if the image is not found at the given path
+     */
+    public static synchronized Image acquire(String path) throws GameException
+    {
+        Entry e = (Entry) entries.get(path);
+        if (e != null)
+        {
+            hits++;
+            if (e.refs == 0)
+            {
+                unlink(e);
+            }
+        } else
+        {
+            misses++;
+            e = new Entry();
+            e.path = path;
+            try
+            {
+                if (!GameEngine.decodesImages())
+                {   // nothing is painted: only the size is needed
+                    readSize(e);
+                } else
+                {
+                    e.image = Image.createImage(path);
+                    e.width = e.image.getWidth();
+                    e.height = e.image.getHeight();
+                }
+            } catch (IOException ex)
+            {
+                throw new GameException("The image " + path + " could not be found.");
+            }
+            e.bytes = 4 * e.width * e.height;
+            decodedBytes += e.bytes;
+            cachedBytes += e.bytes;
+            entries.put(path, e);
+        }
+        e.refs++;
+        evict();
+        return e.image;
+    }
+
+    /**
+     * Count one user less for the image with the given path. An image without users
+     * may be dropped when the cache is over its budget.
+     *
+     * @param path
+     *                relative location to the image file, as used in acquire
+     */
+    public static synchronized void release(String path)
+    {
+        Entry e = (Entry) entries.get(path);
+        if (e != null && e.refs > 0)
+        {
+            e.refs--;
+            if (e.refs == 0)
+            {   // most recently used: at the end of the list
+                e.prev = unusedTail;
+                e.next = null;
+                if (unusedTail != null)
+                {
+                    unusedTail.next = e;
+                } else
+                {
+                    unusedHead = e;
+                }
+                unusedTail = e;
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Get the width of an image that is in the cache
+     *
+     * @param path
+     *                relative location to the image file
+     * @return the width in pixels, 0 if the image is not in the cache
+     */
+    static synchronized int getWidth(String path)
+    {
+        Entry e = (Entry) entries.get(path);
+        return e == null ? 0 : e.width;
+    }
+
+    /**
+     * Get the height of an image that is in the cache
+     *
+     * @param path
+     *                relative location to the image file
+     * @return the height in pixels, 0 if the image is not in the cache
+     */
+    static synchronized int getHeight(String path)
+    {
+        Entry e = (Entry) entries.get(path);
+        return e == null ? 0 : e.height;
+    }
+
+    /**
+     * Set the memory budget of the cache. Images without users are dropped, least recently
+     * used first, as long as the estimated memory use is higher.
+     *
+     * @param bytes
+     *                the budget in bytes, 0 means: don't keep images without users
+     */
+    public static synchronized void setByteBudget(int bytes)
+    {
+        budget = bytes;
+        evict();
+    }
+
+    /**
+     * Get the memory budget of the cache
+     *
+     * @return the budget in bytes
+     */
+    public static synchronized int getByteBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * Get the estimated memory use of the images in the cache
+     *
+     * @return the number of bytes
+     */
+    public static synchronized int getCachedBytes()
+    {
+        return cachedBytes;
+    }
+
+    /**
+     * Get the number of requests that found the image in the cache
+     *
+     * @return the number of hits
+     */
+    public static synchronized int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Get the number of requests that had to decode the image
+     *
+     * @return the number of misses
+     */
+    public static synchronized int getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Get the estimated number of bytes decoded since the start of the game
+     *
+     * @return the number of bytes
+     */
+    public static synchronized int getDecodedBytes()
+    {
+        return decodedBytes;
+    }
+
+    /**
+     * Read the size of a PNG image from its header, without decoding it. Used in headless mode, when nothing is painted.
+     * The header of a PNG file is an 8 byte signature, followed by the IHDR chunk: length, type,
+     * width and height.
+     *
+     * @param e
+     *                the entry, with its path
+     * @throws IOException
+     *                 if the file can't be found or read
+     */
+    private static void readSize(Entry e) throws IOException
+    {
+        InputStream in = GameImageCache.class.getResourceAsStream(e.path);
+        if (in == null)
+        {
+            throw new IOException(e.path);
+        }
+        DataInputStream data = new DataInputStream(in);
+        try
+        {
+            data.readFully(new byte[16]);
+            e.width = data.readInt();
+            e.height = data.readInt();
+        } finally
+        {
+            data.close();
+        }
+    }
+
+    /**
+     * Drop unused images until the cache is within its budget
+     */
+    private static void evict()
+    {
+        while (cachedBytes > budget && unusedHead != null)
+        {
+            Entry e = unusedHead;
+            unlink(e);
+            entries.remove(e.path);
+            cachedBytes -= e.bytes;
+        }
+    }
+
+    /**
+     * Take an entry out of the list of unused entries
+     *
+     * @param e
+     *                the entry
+     */
+    private static void unlink(Entry e)
+    {
+        if (e.prev != null)
+        {
+            e.prev.next = e.next;
+        } else
+        {
+            unusedHead = e.next;
+        }
+        if (e.next != null)
+        {
+            e.next.prev = e.prev;
+        } else
+        {
+            unusedTail = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+    }
+}
@@ -4,7 +4,6 @@
  */
 package phonegame;
 
-import java.io.IOException;
 import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 
@@ -45,6 +44,16 @@ public abstract class GameItem
      */
     private Image image = null;
 
+    /**
+     * The path of the image, the key in the GameImageCache
+     */
+    private String imagePath = null;
+
+    /**
+     * True if this item counts as a user of its image in the GameImageCache
+     */
+    private boolean imageHeld = false;
+
     /**
      * The number of the frame that is currently on display
      */
@@ -80,6 +89,43 @@ public abstract class GameItem
      */
     private boolean visible = true;
 
+    /**
+     * The store that holds the position, size, state and flags of this item while it is
+     * in the game. When it is null, the item is not in the game and the fields of this
+     * object hold the values.
+     * To be used by the game package only.
+     */
+    ItemStore store = null;
+
+    /**
+     * Index of this item in the store (that is: in the list of GameItems of the engine), 
+     * -1 when the item is not in the game.
+     * To be used by the game package only.
+     */
+    int slot = -1;
+
+    /**
+     * True when this item is in an item pool of the engine, waiting to be recycled.
+     * To be used by the game package only.
+     */
+    boolean pooled = false;
+
+    /**
+     * First of the outstanding alarms that this item listens to, if it is an IAlarmListener.
+     * To be used by the game package only.
+     */
+    TimerWheel.Alarm alarms = null;
+
+    /**
+     * How the item was painted in the last frame, for dirty rectangle painting.
+     * painted is false if the item was not on the screen.
+     */
+    private boolean painted = false;
+
+    private int paintedX, paintedY, paintedW, paintedH, paintedFrame;
+
+    private Image paintedImage;
+
     /**
      * Get the state of the GameItem.
      * <br />
@@ -90,6 +136,8 @@ public abstract class GameItem
      */
     public final int getGiState()
     {
+        if (store != null)
+            return store.state[slot];
         return giState;
     }
 
@@ -100,7 +148,7 @@ public abstract class GameItem
      */
     public final boolean isActive()
     {
-        return giState == ACTIVE;
+        return getGiState() == ACTIVE;
     }
 
     /**
@@ -111,12 +159,74 @@ public abstract class GameItem
      */
     final void setGiState(int s)
     {
-        giState = s;
+        if (store != null)
+            store.state[slot] = s;
+        else
+            giState = s;
+    }
+
+    /**
+     * Put this item in the store: copy the values into the arrays and from now on
+     * use the arrays. To be used by ItemStore only!
+     * 
+     * @param s the store
+     * @param index the index of this item in the store
+     */
+    void attach(ItemStore s, int index)
+    {
+        s.items[index] = this;
+        s.x[index] = xPosition;
+        s.y[index] = yPosition;
+        s.prevX[index] = xPosition;
+        s.prevY[index] = yPosition;
+        s.width[index] = frameWidth;
+        s.height[index] = frameHeight;
+        s.state[index] = giState;
+        s.flags[index] = visible ? ItemStore.VISIBLE : 0;
+        store = s;
+        slot = index;
+    }
+
+    /**
+     * Take this item out of the store: copy the values back from the arrays.
+     * To be used by ItemStore only!
+     */
+    void detach()
+    {
+        xPosition = store.x[slot];
+        yPosition = store.y[slot];
+        frameWidth = store.width[slot];
+        frameHeight = store.height[slot];
+        giState = store.state[slot];
+        visible = (store.flags[slot] & ItemStore.VISIBLE) != 0;
+        store = null;
+        slot = -1;
+    }
+
+    /**
+     * Set the frame size, in the store if the item is in the game
+     * 
+     * @param w the frame width
+     * @param h the frame height
+     */
+    private void setFrameSize(int w, int h)
+    {
+        if (store != null)
+        {
+            store.width[slot] = w;
+            store.height[slot] = h;
+        } else
+        {
+            frameWidth = w;
+            frameHeight = h;
+        }
     }
 
     /**
      * Define a fixed image that can be used to display this item.
      * The image has just one frame.
+     * <br/>
+     * Images are shared: items with the same image path use the same image, see GameImageCache.
      * 
      * @param path
      *                relative location to the image file
@@ -125,18 +235,11 @@ public abstract class GameItem
      */
     public void setImage(String path) throws GameException
     {
-        try
-        {
-            image = Image.createImage(path);
-            setFrame(0);
-        } catch (IOException e)
-        {
-            throw new GameException("The image "+path+" could not be found.");
-        }
+        useImage(path);
+        setFrame(0);
 
         // set image dimensions
-        frameWidth = image.getWidth();
-        frameHeight = image.getHeight();
+        setFrameSize(GameImageCache.getWidth(path), GameImageCache.getHeight(path));
         nrOfFrames = 1;
     }
 
@@ -161,19 +264,53 @@ public abstract class GameItem
      */
     public void setImage(String path, int frameWidth, int frameHeight) throws GameException
     {
-        try
-        {
-            image = Image.createImage(path);
-            setFrame(0);
-        } catch (IOException e)
+        useImage(path);
+        setFrame(0);
+
+        // set image dimensions
+        setFrameSize(frameWidth, frameHeight);
+        nrOfFrames = GameImageCache.getWidth(path) / frameWidth;
+    }
+
+    /**
+     * Get the image from the GameImageCache and release the previous one
+     * 
+     * @param path
+     *                relative location to the image file
+     */
+    private void useImage(String path)
+    {
+        Image newImage = GameImageCache.acquire(path);
+        releaseImage();
+        image = newImage;
+        imagePath = path;
+        imageHeld = true;
+    }
+
+    /**
+     * Count this item as a user of its image again, after it has been released.
+     * To be used by the GameEngine when an item enters the game.
+     */
+    void holdImage()
+    {
+        if (!imageHeld && imagePath != null)
         {
-            throw new GameException("The image "+path+" could not be found.");
+            image = GameImageCache.acquire(imagePath);
+            imageHeld = true;
         }
+    }
 
-        // set image dimensions
-        this.frameWidth = frameWidth;
-        this.frameHeight = frameHeight;
-        nrOfFrames = image.getWidth() / frameWidth;
+    /**
+     * Stop using the image in the cache. The item keeps its image, so it can still be painted.
+     * To be used by the GameEngine when an item leaves the game.
+     */
+    void releaseImage()
+    {
+        if (imageHeld)
+        {
+            GameImageCache.release(imagePath);
+            imageHeld = false;
+        }
     }
 
     /**
@@ -194,6 +331,8 @@ public abstract class GameItem
      */
     public int getFrameWidth()
     {
+        if (store != null)
+            return store.width[slot];
         return frameWidth;
     }
 
@@ -205,6 +344,8 @@ public abstract class GameItem
      */
     public int getFrameHeight()
     {
+        if (store != null)
+            return store.height[slot];
         return frameHeight;
     }
 
@@ -277,8 +418,8 @@ public abstract class GameItem
      */
     public void setPosition(int x, int y)
     {
-        xPosition = x;
-        yPosition = y;
+        setX(x);
+        setY(y);
     }
 
     /**
@@ -290,7 +431,10 @@ public abstract class GameItem
      */
     void setX(int x)
     {
-        xPosition = x;
+        if (store != null)
+            store.x[slot] = x;
+        else
+            xPosition = x;
     }
 
     /**
@@ -302,7 +446,10 @@ public abstract class GameItem
      */
     void setY(int y)
     {
-        yPosition = y;
+        if (store != null)
+            store.y[slot] = y;
+        else
+            yPosition = y;
     }
 
     /**
@@ -312,6 +459,8 @@ public abstract class GameItem
      */
     public int getX()
     {
+        if (store != null)
+            return store.x[slot];
         return xPosition;
     }
 
@@ -322,6 +471,8 @@ public abstract class GameItem
      */
     public int getY()
     {
+        if (store != null)
+            return store.y[slot];
         return yPosition;
     }
 
@@ -333,7 +484,16 @@ public abstract class GameItem
      */
     public void setVisible(boolean visible)
     {
-        this.visible = visible;
+        if (store != null)
+        {
+            if (visible)
+                store.flags[slot] |= ItemStore.VISIBLE;
+            else
+                store.flags[slot] &= ~ItemStore.VISIBLE;
+        } else
+        {
+            this.visible = visible;
+        }
     }
 
     /**
@@ -343,6 +503,8 @@ public abstract class GameItem
      */
     public boolean isVisible()
     {
+        if (store != null)
+            return (store.flags[slot] & ItemStore.VISIBLE) != 0;
         return visible;
     }
 
@@ -360,29 +522,124 @@ public abstract class GameItem
     }
 
     /**
-     * Paints this item if it is visible. The upper-left corner of the item is rendered at it's current position (as
-     * defined by setPosition)
+     * Paints this item. The upper-left corner of the item is rendered at the given position on the screen.
+     * The engine checks if the item is visible, and gives its position and size from the copy of the item
+     * list that it paints, because the game loop may be changing the list at the same time.
      * 
      * @param g
      *                the Graphics object provided by the Canvas
-     * @param offsetX
-     *                the horizontal offset used by the viewport
-     * @param offsetY
-     *                the vertical offset used by the viewport
+     * @param x
+     *                the horizontal position of the item on the screen
+     * @param y
+     *                the vertical position of the item on the screen
+     * @param w
+     *                the frame width
+     * @param h
+     *                the frame height
+     */
+    final void paint(Graphics g, int x, int y, int w, int h)
+    {
+        // calculate the position of the filmstrip based on the currentFrame
+        int xFrame = x - currentFrame * w;
+
+        // select the exact region in the canvas that is allowed to change
+        g.setClip(x, y, w, h);
+        // draw the selected part of the filmstrip
+        g.drawImage(image, xFrame, y, Graphics.TOP | Graphics.LEFT);
+    }
+
+    /**
+     * Paints the part of this item that lies in the given rectangle of the screen.
+     * Used for dirty rectangle painting, position and size are given like in paint(g, x, y, w, h).
+     * 
+     * @param g
+     *                the Graphics object provided by the Canvas
+     * @param x
+     *                the horizontal position of the item on the screen
+     * @param y
+     *                the vertical position of the item on the screen
+     * @param w
+     *                the frame width
+     * @param h
+     *                the frame height
+     * @param clipX
+     *                x of the rectangle on the screen
+     * @param clipY
+     *                y of the rectangle on the screen
+     * @param clipW
+     *                width of the rectangle
+     * @param clipH
+     *                height of the rectangle
+     */
+    final void paint(Graphics g, int x, int y, int w, int h, int clipX, int clipY, int clipW, int clipH)
+    {
+        // the part of the item in the rectangle
+        int left = Math.max(x, clipX);
+        int top = Math.max(y, clipY);
+        int right = Math.min(x + w, clipX + clipW);
+        int bottom = Math.min(y + h, clipY + clipH);
+        if (left < right && top < bottom)
+        {
+            g.setClip(left, top, right - left, bottom - top);
+            g.drawImage(image, x - currentFrame * w, y, Graphics.TOP | Graphics.LEFT);
+        }
+    }
+
+    /**
+     * Compare the item with how it was painted in the last frame. If it has moved, changed
+     * its frame or image, or has appeared or disappeared, the old and the new rectangle are added 
+     * to the region that must be painted again. To be used by the GameEngine only.
+     * Called by paint, while the game loop may call untrackPainted, so both are synchronized.
+     * Position and size come from the copy of the item list that paint uses.
+     * 
+     * @param region
+     *                the parts of the world to be painted again
+     * @param x
+     *                the horizontal position of the item in the world
+     * @param y
+     *                the vertical position of the item in the world
+     * @param w
+     *                the frame width
+     * @param h
+     *                the frame height
+     * @param shown
+     *                true if the item is visible and in the viewport now
+     */
+    final synchronized void trackPainted(DirtyRegion region, int x, int y, int w, int h, boolean shown)
+    {
+        if (painted)
+        {
+            if (shown && x == paintedX && y == paintedY && w == paintedW && h == paintedH
+                    && currentFrame == paintedFrame && image == paintedImage)
+                return;
+            region.add(paintedX, paintedY, paintedW, paintedH);
+        }
+        painted = shown;
+        if (shown)
+        {
+            region.add(x, y, w, h);
+            paintedX = x;
+            paintedY = y;
+            paintedW = w;
+            paintedH = h;
+            paintedFrame = currentFrame;
+            paintedImage = image;
+        }
+    }
+
+    /**
+     * The item has left the game: add the rectangle where it was painted to the region 
+     * that must be painted again. To be used by the GameEngine only.
+     * 
+     * @param region
+     *                the parts of the world to be painted again
      */
-    final void paint(Graphics g, int offsetX, int offsetY)
+    final synchronized void untrackPainted(DirtyRegion region)
     {
-        if (visible)
+        if (painted)
         {
-            // calculate x and y postion based on the viewport offset and the currentFrame
-            int x = xPosition - offsetX;
-            int y = yPosition - offsetY;
-            int xFrame = x - currentFrame * frameWidth;
-
-            // select the exact region in the canvas that is allowed to change
-            g.setClip(x, y, frameWidth, frameHeight);
-            // draw the selected part of the filmstrip
-            g.drawImage(image, xFrame, y, Graphics.TOP | Graphics.LEFT);
+            region.add(paintedX, paintedY, paintedW, paintedH);
+            painted = false;
         }
     }
 }
\ No newline at end of file
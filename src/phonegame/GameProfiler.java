@@ -0,0 +1,319 @@
+/*
+ * File: 	GameProfiler.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Measures the time spent in every phase of the game loop and the amount of work done in it,
+ * to find out why a game stutters. Switch it on with GameEngine.setProfiling(true) and get it
+ * with GameEngine.getProfiler().
+ * <br/>
+ * For every measure the profiler keeps the values of the last 64 cycles (or paints, for PAINT).
+ * You can ask for the minimum, average, maximum and the 95th percentile of these values, for example
+ * to show them on the dashboard or print them now and then.
+ * <br/>
+ * Besides that, every value is counted in a histogram, from the start or the last reset. The buckets are
+ * made for times: below 10, 20, 50, 100, 200, 500 and 1000 milliseconds, and 1000 or more. The histograms
+ * of KEY_TO_ACTION and KEY_TO_FRAME show how long the player waits for a key press to have effect: if most
+ * of the time is between the key and the action, the game loop sleeps or works too long per cycle;
+ * if it is between the action and the frame, painting is too slow.
+ * <br/>
+ * Times are in milliseconds. Note that on many phones the clock ticks in steps of 10 milliseconds
+ * or more, so a single value says little, but the average does.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public final class GameProfiler
+{
+    /**
+     * Time of moveItems: moving items and their tile collisions
+     */
+    public static final int MOVE = 0;
+
+    /**
+     * Time of key handling, including the moves of the player
+     */
+    public static final int KEYS = 1;
+
+    /**
+     * Time of the collision detection between items
+     */
+    public static final int COLLISIONS = 2;
+
+    /**
+     * Time of the alarms
+     */
+    public static final int ALARMS = 3;
+
+    /**
+     * Time of the step listeners
+     */
+    public static final int STEPS = 4;
+
+    /**
+     * Time of the clean up of the item list
+     */
+    public static final int CLEANUP = 5;
+
+    /**
+     * Time of painting the screen
+     */
+    public static final int PAINT = 6;
+
+    /**
+     * Number of items moved per cycle
+     */
+    public static final int ITEMS_MOVED = 7;
+
+    /**
+     * Number of pairs of items tested for collision per cycle
+     */
+    public static final int PAIRS_TESTED = 8;
+
+    /**
+     * Number of tile collisions reported to items per cycle
+     */
+    public static final int TILE_COLLISIONS = 9;
+
+    /**
+     * Number of alarms that rang per cycle
+     */
+    public static final int TIMERS_FIRED = 10;
+
+    /**
+     * Time from a key press on the phone to the action of the player (moveUp, fire, ...)
+     */
+    public static final int KEY_TO_ACTION = 11;
+
+    /**
+     * Time from a key press on the phone to the end of painting the first frame that shows its action.
+     * When more keys are pressed for one frame, the first key counts.
+     */
+    public static final int KEY_TO_FRAME = 12;
+
+    /**
+     * Number of measures
+     */
+    private static final int NR_OF_MEASURES = 13;
+
+    /**
+     * Upper limits of the buckets of the histograms, the last bucket has no limit
+     */
+    private static final int[] BUCKET_LIMITS = { 10, 20, 50, 100, 200, 500, 1000 };
+
+    /**
+     * Number of buckets in a histogram
+     */
+    public static final int NR_OF_BUCKETS = 8;
+
+    /**
+     * Number of values kept per measure, a power of two
+     */
+    private static final int SAMPLES = 64;
+
+    /**
+     * The values, a ring buffer per measure
+     */
+    private int[][] values = new int[NR_OF_MEASURES][SAMPLES];
+
+    /**
+     * Total number of values recorded per measure; the next value goes to count % SAMPLES
+     */
+    private int[] count = new int[NR_OF_MEASURES];
+
+    /**
+     * The histograms: the number of values per bucket, per measure
+     */
+    private int[][] histograms = new int[NR_OF_MEASURES][NR_OF_BUCKETS];
+
+    /**
+     * Room to sort the values for the percentile
+     */
+    private int[] sorted = new int[SAMPLES];
+
+    /**
+     * Constructs a profiler. To be used by the GameEngine only.
+     */
+    GameProfiler()
+    {
+        // do nothing
+    }
+
+    /**
+     * Record a value
+     *
+     * @param measure one of the constants of this class
+     * @param value the value
+     */
+    void record(int measure, int value)
+    {
+        values[measure][count[measure] & (SAMPLES - 1)] = value;
+        count[measure]++;
+        int b = 0;
+        while (b < BUCKET_LIMITS.length && value >= BUCKET_LIMITS[b])
+        {
+            b++;
+        }
+        histograms[measure][b]++;
+    }
+
+    /**
+     * Record the time since the given start time, and return the current time as start of the
+     * next phase.
+     *
+     * @param measure one of the time measures of this class
+     * @param start the start time of the phase
+     * @return the current time
+     */
+    long lap(int measure, long start)
+    {
+        long now = System.currentTimeMillis();
+        record(measure, (int) (now - start));
+        return now;
+    }
+
+    /**
+     * Get the most recent value of a measure
+     *
+     * @param measure one of the constants of this class
+     * @return the value, 0 if nothing has been recorded
+     */
+    public int getLast(int measure)
+    {
+        if (count[measure] == 0)
+            return 0;
+        return values[measure][(count[measure] - 1) & (SAMPLES - 1)];
+    }
+
+    /**
+     * Get the lowest of the recent values of a measure
+     *
+     * @param measure one of the constants of this class
+     * @return the minimum, 0 if nothing has been recorded
+     */
+    public int getMin(int measure)
+    {
+        int n = size(measure);
+        int min = n == 0 ? 0 : Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++)
+        {
+            min = Math.min(min, values[measure][i]);
+        }
+        return min;
+    }
+
+    /**
+     * Get the highest of the recent values of a measure
+     *
+     * @param measure one of the constants of this class
+     * @return the maximum, 0 if nothing has been recorded
+     */
+    public int getMax(int measure)
+    {
+        int n = size(measure);
+        int max = 0;
+        for (int i = 0; i < n; i++)
+        {
+            max = Math.max(max, values[measure][i]);
+        }
+        return max;
+    }
+
+    /**
+     * Get the average of the recent values of a measure
+     *
+     * @param measure one of the constants of this class
+     * @return the average, 0 if nothing has been recorded
+     */
+    public double getAverage(int measure)
+    {
+        int n = size(measure);
+        if (n == 0)
+            return 0;
+        long sum = 0;
+        for (int i = 0; i < n; i++)
+        {
+            sum += values[measure][i];
+        }
+        return (double) sum / n;
+    }
+
+    /**
+     * Get the 95th percentile of the recent values of a measure: 95% of the values are
+     * at most this value. This shows the occasional slow cycle that the average hides.
+     *
+     * @param measure one of the constants of this class
+     * @return the 95th percentile, 0 if nothing has been recorded
+     */
+    public int getPercentile95(int measure)
+    {
+        int n = size(measure);
+        if (n == 0)
+            return 0;
+        // insertion sort of a copy, n is small
+        for (int i = 0; i < n; i++)
+        {
+            int v = values[measure][i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > v)
+            {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = v;
+        }
+        return sorted[(n * 95 + 99) / 100 - 1];
+    }
+
+    /**
+     * Get the number of values of a measure in a bucket of its histogram, since the start or the
+     * last reset.
+     *
+     * @param measure one of the constants of this class
+     * @param bucket the bucket, from 0 to NR_OF_BUCKETS - 1, see getBucketLimit
+     * @return the number of values in the bucket
+     */
+    public int getHistogram(int measure, int bucket)
+    {
+        return histograms[measure][bucket];
+    }
+
+    /**
+     * Get the upper limit of a bucket of the histograms: the bucket holds the values below this
+     * limit and at least the limit of the bucket before it.
+     *
+     * @param bucket the bucket, from 0 to NR_OF_BUCKETS - 1
+     * @return the limit, Integer.MAX_VALUE for the last bucket
+     */
+    public static int getBucketLimit(int bucket)
+    {
+        return bucket < BUCKET_LIMITS.length ? BUCKET_LIMITS[bucket] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Forget all values, and empty the histograms
+     */
+    public void reset()
+    {
+        for (int m = 0; m < NR_OF_MEASURES; m++)
+        {
+            count[m] = 0;
+            for (int b = 0; b < NR_OF_BUCKETS; b++)
+            {
+                histograms[m][b] = 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values in the buffer of a measure
+     *
+     * @param measure one of the constants of this class
+     * @return the number of values
+     */
+    private int size(int measure)
+    {
+        return Math.min(count[measure], SAMPLES);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * File: 	GameRecording.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A recording of the keys of a game session, to play the same session again.
+ * <br/>
+ * The recording holds the seed of the random generator and every key action the engine performed:
+ * the cycle, the game action and whether the key was just pressed or held. Key events of the phone 
+ * arrive at any moment, but the engine only handles them in the game loop, so replaying these actions
+ * gives exactly the same game, on the phone or in the HeadlessRunner, at any speed. Use it to run the same session before
+ * and after a change and compare the timings (see GameProfiler).
+ * <br/>
+ * Use GameEngine.startRecording() and stopRecording() to record, and GameEngine.replay() to play it
+ * again in a new game. Recording and replay must both start in the same state of the game, normally
+ * right after the game has been created. The game itself must not use other sources of randomness
+ * (like System.currentTimeMillis()) for this to work.
+ * <br/>
+ * A recording can be saved as bytes, for example with GamePersistence.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public final class GameRecording
+{
+    /**
+     * First bytes of a saved recording
+     */
+    private static final int MAGIC = 0x47524543;   // "GREC"
+
+    private static final int VERSION = 1;
+
+    /**
+     * Key state flags
+     */
+    private static final int NEW_KEY = 1, KEY_HELD = 2;
+
+    /**
+     * The seed of the random generator at the start
+     */
+    private long seed;
+
+    /**
+     * Number of cycles recorded
+     */
+    private int length;
+
+    /**
+     * For every recorded key action: the cycle (counted from the start of the recording), the game action and the flags.
+     * A cycle may have more than one action.
+     */
+    private int[] cycles, actions, flags;
+
+    private int size;
+
+    /**
+     * The cycle number of the game at the start of recording or replay
+     */
+    private int startCycle;
+
+    /**
+     * Position of the replay in the arrays
+     */
+    private int replayIndex;
+
+    /**
+     * Constructs an empty recording
+     *
+     * @param seed the seed of the random generator
+     * @param startCycle the cycle number of the game at the start
+     */
+    GameRecording(long seed, int startCycle)
+    {
+        this.seed = seed;
+        this.startCycle = startCycle;
+        cycles = new int[64];
+        actions = new int[64];
+        flags = new int[64];
+    }
+
+    /**
+     * Record a key action as handleKey performs it. Nothing is stored when no key is pressed.
+     *
+     * @param cycle the cycle number of the game
+     * @param action the game action of the key
+     * @param newKey true if the key has been pressed since the previous cycle
+     * @param keyHeld true if the key is still pressed
+     */
+    void record(int cycle, int action, boolean newKey, boolean keyHeld)
+    {
+        if (newKey || keyHeld)
+        {
+            if (size == cycles.length)
+            {
+                cycles = grow(cycles);
+                actions = grow(actions);
+                flags = grow(flags);
+            }
+            cycles[size] = cycle - startCycle;
+            actions[size] = action;
+            flags[size] = (newKey ? NEW_KEY : 0) | (keyHeld ? KEY_HELD : 0);
+            size++;
+        }
+    }
+
+    /**
+     * Close the recording
+     *
+     * @param cycle the cycle number of the game at the end
+     */
+    void stop(int cycle)
+    {
+        length = cycle - startCycle;
+    }
+
+    /**
+     * Prepare for a replay that starts in the given cycle
+     *
+     * @param cycle the cycle number of the game at the start of the replay
+     */
+    void startReplay(int cycle)
+    {
+        startCycle = cycle;
+        replayIndex = 0;
+    }
+
+    /**
+     * Check if the replay has passed the end of the recording
+     *
+     * @param cycle the cycle number of the game
+     * @return true if the cycle is not in the recording
+     */
+    boolean isFinished(int cycle)
+    {
+        return cycle - startCycle >= length;
+    }
+
+    /**
+     * Find the next recorded key action of a cycle during replay. Call it again
+     * for the next action in the same cycle.
+     *
+     * @param cycle the cycle number of the game
+     * @return the index of the action, -1 if there are no more actions in this cycle
+     */
+    int find(int cycle)
+    {
+        int c = cycle - startCycle;
+        while (replayIndex < size && cycles[replayIndex] < c)
+        {
+            replayIndex++;
+        }
+        if (replayIndex < size && cycles[replayIndex] == c)
+        {
+            return replayIndex++;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the game action of a recorded action
+     *
+     * @param index the index of the action, see find
+     * @return the game action
+     */
+    int getAction(int index)
+    {
+        return actions[index];
+    }
+
+    /**
+     * Gets the newKey flag of a recorded action
+     *
+     * @param index the index of the action, see find
+     * @return true if a key was pressed in that cycle
+     */
+    boolean isNewKey(int index)
+    {
+        return (flags[index] & NEW_KEY) != 0;
+    }
+
+    /**
+     * Gets the keyHeld flag of a recorded action
+     *
+     * @param index the index of the action, see find
+     * @return true if the key was held in that cycle
+     */
+    boolean isKeyHeld(int index)
+    {
+        return (flags[index] & KEY_HELD) != 0;
+    }
+
+    /**
+     * Get the seed of the random generator at the start of the recording
+     *
+     * @return the seed
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Get the number of cycles in the recording
+     *
+     * @return the number of cycles
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Save the recording as bytes
+     *
+     * @return the recording
+     * @throws GameException if writing fails
+     */
+    public byte[] toByteArray() throws GameException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeInt(length);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++)
+            {
+                out.writeInt(cycles[i]);
+                out.writeByte(actions[i]);
+                out.writeByte(flags[i]);
+            }
+            out.close();
+        } catch (IOException e)
+        {
+            throw new GameException("The recording could not be saved: " + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read a recording that has been saved with toByteArray
+     *
+     * @param data the saved recording
+     * @return the recording
+     * @throws GameException if the data is not a recording
+     */
+    public static GameRecording fromByteArray(byte[] data) throws GameException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new GameException("The data is not a recording of this version");
+            }
+            GameRecording r = new GameRecording(in.readLong(), 0);
+            r.length = in.readInt();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++)
+            {
+                int cycle = in.readInt();
+                int action = in.readUnsignedByte();
+                int f = in.readUnsignedByte();
+                r.record(cycle, action, (f & NEW_KEY) != 0, (f & KEY_HELD) != 0);
+            }
+            return r;
+        } catch (IOException e)
+        {
+            throw new GameException("The recording could not be read: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copy an array into one twice as big
+     *
+     * @param old the array
+     * @return the new array
+     */
+    private static int[] grow(int[] old)
+    {
+        int[] result = new int[2 * old.length];
+        System.arraycopy(old, 0, result, 0, old.length);
+        return result;
+    }
+}
@@ -187,6 +187,10 @@ public final class GameSound
      */
     private static final boolean canPlaySounds()
     {
+        if (GameEngine.isHeadless())
+        {
+            return false;
+        }
         // quick 'n dirty hack - required to check if MMAPI is available because
         // some early Nokia Series40 phones can't deal with the Class.forName test
         if (System.getProperty("supports.mixing") != null)
@@ -0,0 +1,341 @@
+/*
+ * File: 	HeadlessRunner.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.microedition.lcdui.Canvas;
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * Runs a game without display, as fast as possible, for load tests, soak tests and bots.
+ * The game logic is the same as on the phone: moving, collisions, alarms and steps, but the screen is not
+ * painted (see -paint), there is no sound and images are not decoded. Start it from the command line:
+ * <pre>
+ *     java phonegame.HeadlessRunner vissenkom.Vissenkom 10000 -bot 42 -profile
+ * </pre>
+ * Arguments: the class of the game, the number of cycles (default 1000), and the options
+ * <ul>
+ * <li>-bot seed: press random keys, with the given seed</li>
+ * <li>-seed seed: seed of the random generator of the game, so every run is the same</li>
+ * <li>-replay path: replay a GameRecording, saved with toByteArray in a resource file. 
+ * Without a number of cycles, the whole recording is replayed.</li>
+ * <li>-size width height: size of the simulated screen (default 176 x 208)</li>
+ * <li>-fixed: move the items with fixed-point numbers, see GameEngine.setFixedPointKinematics</li>
+ * <li>-subpixel: keep the parts of moves less than a pixel, see GameEngine.setSubPixelMovement</li>
+ * <li>-paint: paint the screen after every cycle, in an image. Images are decoded, as on the phone.</li>
+ * <li>-profile: print the times of the phases of the game loop at the end</li>
+ * <li>-alloc: check that the game loop and paint create no objects once the game is warmed up, see
+ * checkAllocations. Implies -paint. The runner exits with status 1 if they do. Desktop VMs must
+ * run this with -XX:-UseTLAB, otherwise the runner refuses, and preferably with -Xint. The game
+ * steadygame.SteadyGame in tools/steadygame is made for this check.</li>
+ * </ul>
+ * The MIDP classes must be on the class path. No display or emulator window is needed, but
+ * the implementation must allow a MIDlet to be created outside of a phone.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class HeadlessRunner implements IInputSource
+{
+    /**
+     * The keys a bot may press
+     */
+    private static final int[] KEYS = { Canvas.UP, Canvas.DOWN, Canvas.LEFT, Canvas.RIGHT, Canvas.FIRE };
+
+    /**
+     * Random keys, null if there is no bot
+     */
+    private GameRandom bot;
+
+    /**
+     * Constructs a runner
+     *
+     * @param bot the random generator for the keys, null for no keys
+     */
+    private HeadlessRunner(GameRandom bot)
+    {
+        this.bot = bot;
+    }
+
+    /**
+     * Press a random key now and then, and release it again
+     *
+     * @see phonegame.IInputSource#pollInput(phonegame.GameEngine, int)
+     */
+    public void pollInput(GameEngine engine, int stepnr)
+    {
+        int r = bot.nextInt() & 0xff;
+        if (r < 32)
+        {
+            engine.pressKey(KEYS[r % KEYS.length]);
+        } else if (r < 64)
+        {
+            engine.releaseKey();
+        }
+    }
+
+    /**
+     * Run a game without display
+     *
+     * @param args game class, number of cycles, options (see class description)
+     * @throws Exception if the game can't be created
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 0)
+        {
+            System.out.println("Usage: HeadlessRunner gameclass [cycles] [-bot seed] [-seed seed] [-replay path] [-size width height] [-fixed] [-subpixel] [-paint] [-profile] [-alloc]");
+            return;
+        }
+        int cycles = -1;
+        GameRandom bot = null;
+        GameRecording replay = null;
+        int width = 176, height = 208;
+        boolean profile = false;
+        boolean fixed = false;
+        boolean subPixel = false;
+        boolean paint = false;
+        boolean alloc = false;
+        for (int i = 1; i < args.length; i++)
+        {
+            if (args[i].equals("-bot"))
+            {
+                bot = new GameRandom(Long.parseLong(args[++i]));
+            } else if (args[i].equals("-seed"))
+            {
+                GameEngine.setInitialSeed(Long.parseLong(args[++i]));
+            } else if (args[i].equals("-replay"))
+            {
+                replay = GameRecording.fromByteArray(readResource(args[++i]));
+            } else if (args[i].equals("-size"))
+            {
+                width = Integer.parseInt(args[++i]);
+                height = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-fixed"))
+            {
+                fixed = true;
+            } else if (args[i].equals("-subpixel"))
+            {
+                subPixel = true;
+            } else if (args[i].equals("-paint"))
+            {
+                paint = true;
+            } else if (args[i].equals("-profile"))
+            {
+                profile = true;
+            } else if (args[i].equals("-alloc"))
+            {
+                alloc = true;
+                paint = true;
+            } else
+            {
+                cycles = Integer.parseInt(args[i]);
+            }
+        }
+
+        if (alloc && !measuresSmallObjects())
+        {
+            System.out.println("The memory in use does not show small objects, the allocation check would see nothing.");
+            System.out.println("Run the VM without thread local allocation buffers: java -XX:-UseTLAB -Xint ...");
+            System.exit(2);
+        }
+        GameEngine.setHeadless(width, height, paint);
+        GameEngine game = (GameEngine) Class.forName(args[0]).newInstance();
+        if (bot != null)
+        {
+            game.setInputSource(new HeadlessRunner(bot));
+        }
+        if (replay != null)
+        {
+            game.replay(replay);
+            if (cycles < 0)
+            {
+                cycles = replay.getLength();
+            }
+        }
+        if (cycles < 0)
+        {
+            cycles = 1000;
+        }
+        game.setFixedPointKinematics(fixed);
+        game.setSubPixelMovement(subPixel);
+        game.setProfiling(profile);
+        Graphics screen = null;
+        if (paint)
+        {
+            screen = Image.createImage(width, height).getGraphics();
+        }
+
+        if (alloc)
+        {
+            if (!checkAllocations(game, cycles, screen))
+            {
+                System.exit(1);
+            }
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int done = run(game, cycles, screen);
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        System.out.println(done + " cycles in " + time + " ms, " + (done * 1000L / time) + " cycles per second");
+        if (profile)
+        {
+            printProfile(game.getProfiler(), paint);
+        }
+    }
+
+    /**
+     * Run a number of cycles, and paint the screen after every cycle
+     *
+     * @param game the game
+     * @param cycles the number of cycles
+     * @param screen the Graphics to paint in, null to paint nothing
+     * @return the number of cycles executed, less when the game has stopped
+     */
+    private static int run(GameEngine game, int cycles, Graphics screen)
+    {
+        if (screen == null)
+        {
+            return game.runHeadless(cycles);
+        }
+        int done = 0;
+        while (done < cycles && game.runHeadless(1) == 1)
+        {
+            game.paintHeadless(screen);
+            done++;
+        }
+        return done;
+    }
+
+    /**
+     * Check that the game loop and paint create no objects once the game is warmed up. In the first half of
+     * the cycles the pools, caches and arrays of the engine and the game fill up; in the second half
+     * not a single object may be created, by the engine or by the game. Every object created in the
+     * game loop is garbage sooner or later, and on a phone a garbage collection takes long enough
+     * to skip frames.
+     * <br/>
+     * The memory in use is measured with Runtime.freeMemory after every cycle and its frame.
+     * Desktop VMs hand out memory to a thread in blocks, which hides small objects: run them
+     * with -XX:-UseTLAB, see measuresSmallObjects. Their compiler also creates a few objects
+     * now and then, which are counted as well; -Xint switches it off.
+     * <br/>
+     * A game passes only if it is steady: no new items, strings or Vectors once it runs.
+     * steadygame.SteadyGame (in tools/steadygame) is such a game, and it uses pools, timers, tiles, the dashboard,
+     * findItemAt and deleteAllGameItems. The vissenkom sample creates a Strawberry now and then,
+     * so it does not pass.
+     *
+     * @param game the game
+     * @param cycles the number of cycles, half of them to warm up
+     * @param screen the Graphics to paint in, null to paint nothing
+     * @return true if no memory was allocated in the second half
+     */
+    private static boolean checkAllocations(GameEngine game, int cycles, Graphics screen)
+    {
+        Runtime rt = Runtime.getRuntime();
+        int warmUp = cycles / 2;
+        run(game, warmUp, screen);
+        System.gc();
+        int allocating = 0;
+        int first = -1;
+        long total = 0;
+        long used = rt.totalMemory() - rt.freeMemory();
+        for (int c = warmUp; c < cycles; c++)
+        {
+            if (run(game, 1, screen) == 0)
+            {   // the game has stopped
+                break;
+            }
+            long now = rt.totalMemory() - rt.freeMemory();
+            if (now != used)
+            {   // less memory in use means a garbage collection, and garbage
+                allocating++;
+                total += Math.max(0, now - used);
+                if (first < 0)
+                {
+                    first = c;
+                }
+                used = now;
+            }
+        }
+        if (allocating == 0)
+        {
+            System.out.println("No allocations in " + (cycles - warmUp) + " cycles after " + warmUp + " cycles of warming up");
+            return true;
+        }
+        System.out.println("Allocations in " + allocating + " of " + (cycles - warmUp) + " cycles, at least " + total
+                + " bytes, the first in cycle " + first);
+        return false;
+    }
+
+    /**
+     * Find out if the memory in use, from Runtime.freeMemory, changes when a small object is created.
+     * Desktop VMs hand out memory to a thread in blocks (thread local allocation buffers), and only
+     * a new block shows in the memory in use. Then checkAllocations would miss most objects.
+     *
+     * @return true if every small object shows
+     */
+    private static boolean measuresSmallObjects()
+    {
+        Runtime rt = Runtime.getRuntime();
+        Object[] keep = new Object[8];
+        for (int i = 0; i < keep.length; i++)
+        {
+            long used = rt.totalMemory() - rt.freeMemory();
+            keep[i] = new int[4];
+            if (rt.totalMemory() - rt.freeMemory() <= used)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a resource file
+     *
+     * @param path the path of the file
+     * @return the contents
+     * @throws IOException if the file can't be read
+     */
+    private static byte[] readResource(String path) throws IOException
+    {
+        InputStream in = HeadlessRunner.class.getResourceAsStream(path);
+        if (in == null)
+        {
+            throw new IOException("The file " + path + " could not be found");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) > 0)
+        {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Print the statistics of the game loop
+     *
+     * @param p the profiler
+     * @param painted true if the screen was painted
+     */
+    private static void printProfile(GameProfiler p, boolean painted)
+    {
+        String[] names = { "move", "keys", "collisions", "alarms", "steps", "cleanup", "paint",
+                "items moved", "pairs tested", "tile collisions", "timers fired", "key to action", "key to frame" };
+        for (int m = 0; m < names.length; m++)
+        {   // without painting there are no paint times
+            if (painted || (m != GameProfiler.PAINT && m != GameProfiler.KEY_TO_FRAME))
+            {
+                System.out.println(names[m] + ": min " + p.getMin(m) + ", avg " + p.getAverage(m) + ", max "
+                        + p.getMax(m) + ", p95 " + p.getPercentile95(m));
+            }
+        }
+    }
+}
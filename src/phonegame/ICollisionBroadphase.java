@@ -0,0 +1,31 @@
+/*
+ * File: 	ICollisionBroadphase.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Use this interface if you want to decide yourself which items will be checked for collisions.
+ * <br/>
+ * In every cycle of the game loop the GameEngine hands the positions and sizes of all its items
+ * to the broadphase. The broadphase selects the pairs of items that may collide and passes
+ * them to CollisionSet.test(a, b), which does the precise test and sends the collision events.
+ * A good broadphase skips most of the pairs that are far apart.
+ * <br/>
+ * The engine comes with three broadphases: BruteForceBroadphase (the default, tests all pairs),
+ * SpatialHashBroadphase and SweepAndPruneBroadphase. Select one with
+ * GameEngine.setCollisionBroadphase().
+ *
+ * @version 3.3, October 16, 2026
+ */
+public interface ICollisionBroadphase
+{
+    /**
+     * Find the pairs of items that may collide and test them with items.test(a, b).
+     * Every pair must be tested at most once in a call.
+     *
+     * @param items
+     *                the items of the game in this cycle
+     */
+    public void findCollisions(CollisionSet items);
+}
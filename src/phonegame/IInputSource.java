@@ -0,0 +1,25 @@
+/*
+ * File: 	IInputSource.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Use this interface to simulate key events, for example for a bot that plays the game
+ * or a test. Register the source with GameEngine.setInputSource.
+ * 
+ * @version 3.3, October 16, 2026
+ */
+public interface IInputSource
+{
+    /**
+     * Called at the start of every cycle, before the keys are handled. Use 
+     * engine.pressKey(gameAction) and engine.releaseKey() to simulate the keys.
+     * 
+     * @param engine
+     *                the game
+     * @param stepnr
+     *                the number of the cycle
+     */
+    public void pollInput(GameEngine engine, int stepnr);
+}
@@ -0,0 +1,31 @@
+/*
+ * File: 	IItemFactory.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Use this interface to let the GameEngine recycle GameItems of a certain type, for example
+ * bullets that are fired and deleted all the time. Register the factory with
+ * GameEngine.registerItemPool and get new items with GameEngine.acquireGameItem.
+ * 
+ * @version 3.3, October 16, 2026
+ */
+public interface IItemFactory
+{
+    /**
+     * Called when a new item is needed and there is no item to recycle.
+     * 
+     * @return a new GameItem of the type of the pool
+     */
+    public GameItem createItem();
+
+    /**
+     * Called when a deleted item is recycled, before it is handed out again.
+     * Put the item back in its starting state here: speed, direction, frame, and so on.
+     * 
+     * @param item
+     *                the recycled item
+     */
+    public void resetItem(GameItem item);
+}
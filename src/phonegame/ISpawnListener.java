@@ -0,0 +1,30 @@
+/*
+ * File: 	ISpawnListener.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Use this interface to create the items of a level that is loaded with GameEngine.loadLevel.
+ * The level only holds the type and position of every item; the game decides which GameItem
+ * that is, and adds it to the game.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public interface ISpawnListener
+{
+    /**
+     * Called by loadLevel for every item of the level, in the order they are stored.
+     *
+     * @param type
+     *                the type of the item, as written in the level, for example "Monster".
+     *                Items of the same type get the same String object.
+     * @param x
+     *                x-position of the item in the world
+     * @param y
+     *                y-position of the item in the world
+     * @param parameter
+     *                a number for the game to use, for example a direction or a speed
+     */
+    public void spawnItem(String type, int x, int y, int parameter);
+}
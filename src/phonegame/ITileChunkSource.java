@@ -0,0 +1,52 @@
+/*
+ * File: 	ITileChunkSource.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * Use this interface to give the game a tile map that is too big to keep in memory. The map is
+ * divided in square chunks of tiles, and the engine asks for a chunk when the viewport or a moving
+ * item comes near it. Chunks far away are dropped again. Register the source with
+ * GameEngine.addEnvironmentMap(ITileChunkSource, int, int). PackedTileSource reads the chunks
+ * from a resource.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public interface ITileChunkSource
+{
+    /**
+     * Gets the width of the map
+     *
+     * @return the number of columns of tiles
+     */
+    public int getColumns();
+
+    /**
+     * Gets the height of the map
+     *
+     * @return the number of rows of tiles
+     */
+    public int getRows();
+
+    /**
+     * Gets the size of the chunks
+     *
+     * @return the number of tiles in a row and in a column of a chunk, a power of 2
+     */
+    public int getChunkSize();
+
+    /**
+     * Called by the game loop when it needs the tiles of a chunk. Tiles of a chunk at the edge
+     * that lie outside the map are not used.
+     *
+     * @param chunkColumn
+     *                the column of the chunk, the chunk starts at tile column chunkColumn * chunk size
+     * @param chunkRow
+     *                the row of the chunk, the chunk starts at tile row chunkRow * chunk size
+     * @param tiles
+     *                the array to put the tile numbers in, row by row, chunk size * chunk size tiles.
+     *                0 means 'no tile', just like in GameEngine.addEnvironmentMap(byte[][], int, int).
+     */
+    public void loadChunk(int chunkColumn, int chunkRow, byte[] tiles);
+}
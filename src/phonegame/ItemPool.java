@@ -0,0 +1,98 @@
+/*
+ * File: 	ItemPool.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * A pool of deleted GameItems of one type, ready to be used again.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class ItemPool
+{
+    /**
+     * Creates and resets the items
+     */
+    private IItemFactory factory;
+
+    /**
+     * The items that can be recycled
+     */
+    private GameItem[] free;
+
+    private int nrFree;
+
+    /**
+     * Number of acquires that got a recycled item, and that needed a new one
+     */
+    private int hits, misses;
+
+    /**
+     * Constructs a pool
+     *
+     * @param factory the factory of the items
+     * @param maxSize the maximal number of items kept in the pool
+     */
+    ItemPool(IItemFactory factory, int maxSize)
+    {
+        this.factory = factory;
+        free = new GameItem[maxSize];
+    }
+
+    /**
+     * Get an item from the pool, or a new one if the pool is empty
+     *
+     * @return the item
+     */
+    GameItem acquire()
+    {
+        if (nrFree > 0)
+        {
+            GameItem item = free[--nrFree];
+            free[nrFree] = null;
+            item.pooled = false;
+            hits++;
+            factory.resetItem(item);
+            return item;
+        }
+        misses++;
+        return factory.createItem();
+    }
+
+    /**
+     * Put an item that has left the game in the pool. When the pool is full, the item is dropped.
+     *
+     * @param item the item
+     * @return true if the item is in the pool
+     */
+    boolean release(GameItem item)
+    {
+        if (!item.pooled && nrFree < free.length)
+        {
+            item.pooled = true;
+            free[nrFree++] = item;
+        }
+        return item.pooled;
+    }
+
+    /**
+     * Gets the number of acquires that got a recycled item
+     *
+     * @return the number of hits
+     */
+    int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Gets the number of acquires that needed a new item
+     *
+     * @return the number of misses
+     */
+    int getMisses()
+    {
+        return misses;
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * File: 	ItemStore.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The list of GameItems of the engine, stored as parallel arrays.
+ * <br/>
+ * Position, previous position, frame size, state and flags of every item are kept in arrays
+ * of ints, at the index of the item in the list. A GameItem that is in the game acts as a handle:
+ * its get- and set-methods read and write these arrays. In this way the loops of the engine
+ * (moving, collisions, painting) can read the values straight from the arrays, without
+ * calling a method on every item.
+ * <br/>
+ * The list is ordered: (non-moving) GameItems, then MoveableGameItems, then the player.
+ * New items are added and deleted items are taken out once per cycle, by compact().
+ * While compact() runs the rows are incomplete, so the game loop calls it holding the lock
+ * of the store. Paint holds the same lock only while it copies the rows it needs, and paints
+ * the items from that copy.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class ItemStore
+{
+    /**
+     * Flag for visible items
+     */
+    static final int VISIBLE = 1;
+
+    /**
+     * Flag for MoveableGameItems (including the player)
+     */
+    static final int MOVEABLE = 2;
+
+    /**
+     * Flag for MoveableGameItems that have collision detection switched on
+     */
+    static final int DETECT = 4;
+
+    /**
+     * Slot of a new item that is about to be added by compact()
+     */
+    private static final int PENDING = -2;
+
+    /**
+     * The partitions of the list
+     */
+    private static final int STATIC_ITEM = 0, MOVING_ITEM = 1, PLAYER_ITEM = 2;
+
+    /**
+     * The items themselves
+     */
+    GameItem[] items;
+
+    /**
+     * Position of the items
+     */
+    int[] x, y;
+
+    /**
+     * Previous position of the items, only used for MoveableGameItems
+     */
+    int[] prevX, prevY;
+
+    /**
+     * Frame size of the items
+     */
+    int[] width, height;
+
+    /**
+     * State of the items: GameItem.ACTIVE or GameItem.DELETED
+     */
+    int[] state;
+
+    /**
+     * Flags of the items: VISIBLE, MOVEABLE, DETECT
+     */
+    int[] flags;
+
+    /**
+     * Number of items in the store
+     */
+    int size;
+
+    /**
+     * Partition boundaries after the last compact(): index of the first
+     * MoveableGameItem and index of the player
+     */
+    int firstMoving, firstPlayer;
+
+    /**
+     * The items that have left the game in the last compact()
+     */
+    GameItem[] removed = new GameItem[16];
+
+    int nrRemoved;
+
+    /**
+     * Second set of arrays, used by compact()
+     */
+    private GameItem[] spareItems;
+
+    private int[] spareX, spareY, sparePrevX, sparePrevY, spareWidth, spareHeight, spareState, spareFlags;
+
+    /**
+     * Constructs an empty store
+     *
+     * @param capacity the initial number of items that fit in the arrays
+     */
+    ItemStore(int capacity)
+    {
+        items = new GameItem[capacity];
+        x = new int[capacity];
+        y = new int[capacity];
+        prevX = new int[capacity];
+        prevY = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        state = new int[capacity];
+        flags = new int[capacity];
+    }
+
+    /**
+     * Gets the number of items
+     *
+     * @return the number of items
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the item at the given index
+     *
+     * @param index the index
+     * @return the GameItem
+     */
+    GameItem get(int index)
+    {
+        return items[index];
+    }
+
+    /**
+     * Rebuild the list at the end of a cycle, in one pass: deleted items are taken out and
+     * new items are added at the end of their partition. The list has three partitions:
+     * (non-moving) GameItems, MoveableGameItems and the player. New items are added in the order
+     * in which they are given, after the items of the same partition that are already in the list.
+     * <br/>
+     * The rows are copied into a second set of arrays, which then becomes the current one. The
+     * arrays are swapped every time, so once they are big enough no memory is allocated.
+     * Afterwards, the new partition boundaries are in firstMoving and firstPlayer, and
+     * the items that left the game are in removed.
+     *
+     * @param firstMovingIndex index of the first MoveableGameItem
+     * @param playerIndex index of the player (or the end of the list, if there is none)
+     * @param added the new items
+     * @param nrAdded the number of new items
+     */
+    void compact(int firstMovingIndex, int playerIndex, GameItem[] added, int nrAdded)
+    {
+        nrRemoved = 0;
+        // new items: items in the game already (deleted and added again) and doubles are skipped,
+        // items that have been deleted before they were added go straight to the removed list
+        int newStatic = 0, newMoving = 0, newPlayers = 0;
+        for (int k = 0; k < nrAdded; k++)
+        {
+            GameItem item = added[k];
+            if (item.store != null || item.slot == PENDING)
+            {
+                added[k] = null;
+            } else if (item.getGiState() == GameItem.DELETED)
+            {
+                addRemoved(item);
+                added[k] = null;
+            } else
+            {
+                item.slot = PENDING;
+                if (item instanceof GamePlayer)
+                {
+                    newPlayers++;
+                } else if (item instanceof MoveableGameItem)
+                {
+                    newMoving++;
+                } else
+                {
+                    newStatic++;
+                }
+            }
+        }
+        // deleted items: copy their values back while the arrays still hold them
+        int oldSize = size;
+        int kept = 0;
+        for (int i = 0; i < oldSize; i++)
+        {
+            if (state[i] == GameItem.DELETED)
+            {
+                addRemoved(items[i]);
+                items[i].detach();
+            } else
+            {
+                kept++;
+            }
+        }
+        if (kept == oldSize && newStatic + newMoving + newPlayers == 0)
+        {   // nothing changed
+            firstMoving = firstMovingIndex;
+            firstPlayer = playerIndex;
+            return;
+        }
+        // swap: the old rows become the source, the current arrays are filled again
+        ensureSpare(kept + newStatic + newMoving + newPlayers);
+        GameItem[] srcItems = items;
+        int[] srcState = state;
+        swap();
+        size = 0;
+        copyKept(srcItems, srcState, 0, firstMovingIndex);
+        addNew(added, nrAdded, STATIC_ITEM);
+        firstMoving = size;
+        copyKept(srcItems, srcState, firstMovingIndex, playerIndex);
+        addNew(added, nrAdded, MOVING_ITEM);
+        firstPlayer = size;
+        copyKept(srcItems, srcState, playerIndex, oldSize);
+        addNew(added, nrAdded, PLAYER_ITEM);
+        for (int i = 0; i < oldSize; i++)
+        {   // no references to old items in the spare arrays
+            srcItems[i] = null;
+        }
+    }
+
+    /**
+     * Copy the rows of the items that stay in the game from the spare arrays
+     * to the end of the current ones. Rows are copied in runs.
+     *
+     * @param srcItems the old items
+     * @param srcState the old states
+     * @param from first row of the range
+     * @param to end (exclusive) of the range
+     */
+    private void copyKept(GameItem[] srcItems, int[] srcState, int from, int to)
+    {
+        int i = from;
+        while (i < to)
+        {
+            if (srcState[i] == GameItem.DELETED)
+            {
+                i++;
+            } else
+            {
+                int run = i;
+                while (run < to && srcState[run] != GameItem.DELETED)
+                {
+                    run++;
+                }
+                int length = run - i;
+                System.arraycopy(srcItems, i, items, size, length);
+                System.arraycopy(spareX, i, x, size, length);
+                System.arraycopy(spareY, i, y, size, length);
+                System.arraycopy(sparePrevX, i, prevX, size, length);
+                System.arraycopy(sparePrevY, i, prevY, size, length);
+                System.arraycopy(spareWidth, i, width, size, length);
+                System.arraycopy(spareHeight, i, height, size, length);
+                System.arraycopy(srcState, i, state, size, length);
+                System.arraycopy(spareFlags, i, flags, size, length);
+                for (int k = 0; k < length; k++)
+                {
+                    items[size + k].slot = size + k;
+                }
+                size += length;
+                i = run;
+            }
+        }
+    }
+
+    /**
+     * Add the new items of one partition to the end of the list
+     *
+     * @param added the new items, skipped ones have been set to null
+     * @param nrAdded the number of new items
+     * @param kind STATIC_ITEM, MOVING_ITEM or PLAYER_ITEM
+     */
+    private void addNew(GameItem[] added, int nrAdded, int kind)
+    {
+        for (int k = 0; k < nrAdded; k++)
+        {
+            GameItem item = added[k];
+            if (item != null && kindOf(item) == kind)
+            {
+                item.attach(this, size);
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Gets the partition an item belongs to
+     *
+     * @param item the GameItem
+     * @return STATIC_ITEM, MOVING_ITEM or PLAYER_ITEM
+     */
+    private static int kindOf(GameItem item)
+    {
+        if (item instanceof GamePlayer)
+            return PLAYER_ITEM;
+        if (item instanceof MoveableGameItem)
+            return MOVING_ITEM;
+        return STATIC_ITEM;
+    }
+
+    /**
+     * Add an item to the list of removed items
+     *
+     * @param item the item that leaves the game
+     */
+    private void addRemoved(GameItem item)
+    {
+        if (nrRemoved == removed.length)
+        {
+            GameItem[] newRemoved = new GameItem[2 * removed.length];
+            System.arraycopy(removed, 0, newRemoved, 0, nrRemoved);
+            removed = newRemoved;
+        }
+        removed[nrRemoved++] = item;
+    }
+
+    /**
+     * Clear the list of removed items, so they can be garbage collected
+     */
+    void clearRemoved()
+    {
+        for (int k = 0; k < nrRemoved; k++)
+        {
+            removed[k] = null;
+        }
+        nrRemoved = 0;
+    }
+
+    /**
+     * Make sure both the current and the spare arrays can hold the given number of rows.
+     * The current rows are kept.
+     *
+     * @param capacity the number of rows needed
+     */
+    private void ensureSpare(int capacity)
+    {
+        if (items.length < capacity)
+        {
+            int length = items.length;
+            while (length < capacity)
+            {
+                length *= 2;
+            }
+            GameItem[] newItems = new GameItem[length];
+            System.arraycopy(items, 0, newItems, 0, size);
+            items = newItems;
+            x = grow(x, length);
+            y = grow(y, length);
+            prevX = grow(prevX, length);
+            prevY = grow(prevY, length);
+            width = grow(width, length);
+            height = grow(height, length);
+            state = grow(state, length);
+            flags = grow(flags, length);
+        }
+        if (spareItems == null || spareItems.length != items.length)
+        {
+            int length = items.length;
+            spareItems = new GameItem[length];
+            spareX = new int[length];
+            spareY = new int[length];
+            sparePrevX = new int[length];
+            sparePrevY = new int[length];
+            spareWidth = new int[length];
+            spareHeight = new int[length];
+            spareState = new int[length];
+            spareFlags = new int[length];
+        }
+    }
+
+    /**
+     * Swap the current and the spare arrays
+     */
+    private void swap()
+    {
+        GameItem[] t = items;
+        items = spareItems;
+        spareItems = t;
+        int[] a = x;
+        x = spareX;
+        spareX = a;
+        a = y;
+        y = spareY;
+        spareY = a;
+        a = prevX;
+        prevX = sparePrevX;
+        sparePrevX = a;
+        a = prevY;
+        prevY = sparePrevY;
+        sparePrevY = a;
+        a = width;
+        width = spareWidth;
+        spareWidth = a;
+        a = height;
+        height = spareHeight;
+        spareHeight = a;
+        a = state;
+        state = spareState;
+        spareState = a;
+        a = flags;
+        flags = spareFlags;
+        spareFlags = a;
+    }
+
+    /**
+     * Copy an array into a bigger one
+     *
+     * @param old the array
+     * @param capacity the new length
+     * @return the new array
+     */
+    private int[] grow(int[] old, int capacity)
+    {
+        int[] result = new int[capacity];
+        System.arraycopy(old, 0, result, 0, size);
+        return result;
+    }
+}
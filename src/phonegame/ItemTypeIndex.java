@@ -0,0 +1,242 @@
+/*
+ * File: 	ItemTypeIndex.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Index of the GameItems in the store by their class. For every class there is a list of its
+ * instances, in the order of the store. The index is kept up to date by the GameEngine at the
+ * end of every cycle, together with the store, so finding the items of a type needs no
+ * pass over all items.
+ * <br/>
+ * Only the exact class of an item counts, not its superclasses.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class ItemTypeIndex
+{
+    /**
+     * The instances of one class
+     */
+    private static final class Bucket
+    {
+        GameItem[] members = new GameItem[8];
+
+        int count;
+
+        /**
+         * True if members have left the game in this cycle
+         */
+        boolean dirty;
+
+        /**
+         * Next bucket of a class with the same name (in another package)
+         */
+        Bucket sameName;
+    }
+
+    /**
+     * Buckets by Class
+     */
+    private Hashtable byClass = new Hashtable();
+
+    /**
+     * First bucket by class name, without package name
+     */
+    private Hashtable byName = new Hashtable();
+
+    /**
+     * All buckets
+     */
+    private Bucket[] buckets = new Bucket[8];
+
+    private int nrOfBuckets;
+
+    /**
+     * Add an item that has entered the game
+     *
+     * @param item the new item
+     */
+    void add(GameItem item)
+    {
+        Bucket b = (Bucket) byClass.get(item.getClass());
+        if (b == null)
+        {
+            b = newBucket(item.getClass());
+        }
+        if (b.count == b.members.length)
+        {
+            GameItem[] bigger = new GameItem[2 * b.count];
+            System.arraycopy(b.members, 0, bigger, 0, b.count);
+            b.members = bigger;
+        }
+        b.members[b.count++] = item;
+    }
+
+    /**
+     * Mark the type of an item that has left the game. The item itself is taken out by
+     * compact(), together with all other items that left in this cycle.
+     *
+     * @param item the item that has been removed from the store
+     */
+    void remove(GameItem item)
+    {
+        Bucket b = (Bucket) byClass.get(item.getClass());
+        if (b != null)
+        {
+            b.dirty = true;
+        }
+    }
+
+    /**
+     * Take the items that are no longer in the store out of the index.
+     * Only the types marked by remove() are visited.
+     */
+    void compact()
+    {
+        for (int k = 0; k < nrOfBuckets; k++)
+        {
+            Bucket b = buckets[k];
+            if (b.dirty)
+            {
+                int kept = 0;
+                for (int i = 0; i < b.count; i++)
+                {
+                    if (b.members[i].store != null)
+                    {
+                        b.members[kept++] = b.members[i];
+                    }
+                }
+                for (int i = kept; i < b.count; i++)
+                {
+                    b.members[i] = null;
+                }
+                b.count = kept;
+                b.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Add all items of the given class to a Vector
+     *
+     * @param type the class
+     * @param result the Vector to add the items to
+     * @return the number of items added
+     */
+    int getItems(Class type, Vector result)
+    {
+        Bucket b = (Bucket) byClass.get(type);
+        if (b == null)
+            return 0;
+        addMembers(b, result);
+        return b.count;
+    }
+
+    /**
+     * Add all items of classes with the given name to a Vector
+     *
+     * @param name the class name, without package name
+     * @param result the Vector to add the items to
+     * @return the number of items added
+     */
+    int getItems(String name, Vector result)
+    {
+        int found = 0;
+        for (Bucket b = (Bucket) byName.get(name); b != null; b = b.sameName)
+        {
+            addMembers(b, result);
+            found += b.count;
+        }
+        return found;
+    }
+
+    /**
+     * Check if there is an active item of the given class
+     *
+     * @param type the class
+     * @return true if there is at least one active item
+     */
+    boolean existActive(Class type)
+    {
+        return hasActive((Bucket) byClass.get(type));
+    }
+
+    /**
+     * Check if there is an active item of a class with the given name
+     *
+     * @param name the class name, without package name
+     * @return true if there is at least one active item
+     */
+    boolean existActive(String name)
+    {
+        for (Bucket b = (Bucket) byName.get(name); b != null; b = b.sameName)
+        {
+            if (hasActive(b))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if a bucket contains an active item. Normally the first one is.
+     *
+     * @param b the bucket, may be null
+     * @return true if there is an active item
+     */
+    private boolean hasActive(Bucket b)
+    {
+        if (b != null)
+        {
+            for (int i = 0; i < b.count; i++)
+            {
+                if (b.members[i].isActive())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the members of a bucket to a Vector
+     *
+     * @param b the bucket
+     * @param result the Vector
+     */
+    private void addMembers(Bucket b, Vector result)
+    {
+        for (int i = 0; i < b.count; i++)
+        {
+            result.addElement(b.members[i]);
+        }
+    }
+
+    /**
+     * Create the bucket for a class
+     *
+     * @param type the class
+     * @return the new bucket
+     */
+    private Bucket newBucket(Class type)
+    {
+        Bucket b = new Bucket();
+        byClass.put(type, b);
+        // remove package name from the getName() string
+        String fullQualifiedName = type.getName();
+        String name = fullQualifiedName.substring(fullQualifiedName.lastIndexOf('.') + 1);
+        b.sameName = (Bucket) byName.get(name);
+        byName.put(name, b);
+        if (nrOfBuckets == buckets.length)
+        {
+            Bucket[] bigger = new Bucket[2 * nrOfBuckets];
+            System.arraycopy(buckets, 0, bigger, 0, nrOfBuckets);
+            buckets = bigger;
+        }
+        buckets[nrOfBuckets++] = b;
+        return b;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * File: 	KeyEventQueue.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The key events of the phone, on their way from the user interface thread to the game loop.
+ * Every press, release and repeat is kept, with the time it happened, so two keys pressed in one
+ * cycle are both handled. The queue is a ring of a fixed size; when it is full, new events are
+ * counted and dropped.
+ * <br/>
+ * The game loop takes events without locking: the writer only moves tail, the reader only moves head,
+ * and both are volatile, so an event is complete before the reader can see it. Writers do lock each
+ * other out, because simulated keys (GameEngine.pressKey) may come from another thread than the keys
+ * of the phone. Key events are rare, so that lock is hardly ever contended, and the game loop never waits.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class KeyEventQueue
+{
+    /**
+     * Kinds of events
+     */
+    static final int PRESSED = 1, RELEASED = 2, REPEATED = 3;
+
+    /**
+     * The events in the ring: kind, game action and time
+     */
+    private final int[] types, actions;
+
+    private final long[] times;
+
+    /**
+     * size - 1, the size is a power of 2
+     */
+    private final int mask;
+
+    /**
+     * Number of events taken and put, the position in the ring is the number modulo the size.
+     * Only the reader changes head, only the writers change tail.
+     */
+    private volatile int head, tail;
+
+    /**
+     * Number of events dropped because the queue was full
+     */
+    private volatile int overflows;
+
+    /**
+     * The reader drops the events before this number, set by clear
+     */
+    private volatile int clearTo;
+
+    /**
+     * The event taken by next
+     */
+    private int type, action;
+
+    private long time;
+
+    /**
+     * Constructs an empty queue
+     *
+     * @param size the maximum number of events, a power of 2
+     */
+    KeyEventQueue(int size)
+    {
+        types = new int[size];
+        actions = new int[size];
+        times = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Put an event in the queue
+     *
+     * @param type PRESSED, RELEASED or REPEATED
+     * @param action the game action of the key
+     * @param time the time of the event, from System.currentTimeMillis()
+     * @return false if the queue is full, the event is dropped
+     */
+    synchronized boolean offer(int type, int action, long time)
+    {
+        int t = tail;
+        if (t - head == types.length)
+        {
+            overflows++;
+            return false;
+        }
+        types[t & mask] = type;
+        actions[t & mask] = action;
+        times[t & mask] = time;
+        // publish the event: the reader sees the new tail only after the event itself
+        tail = t + 1;
+        return true;
+    }
+
+    /**
+     * Take the oldest event out of the queue. Read it with getType, getAction and getTime.
+     * To be used by the game loop only.
+     *
+     * @return false if there is no event
+     */
+    boolean next()
+    {
+        int h = head;
+        int c = clearTo;
+        if (h - c < 0)
+        {   // events from before clear
+            h = c;
+            head = h;
+        }
+        if (h == tail)
+        {
+            return false;
+        }
+        type = types[h & mask];
+        action = actions[h & mask];
+        time = times[h & mask];
+        // free the place for the writer
+        head = h + 1;
+        return true;
+    }
+
+    /**
+     * Drop the events that are in the queue now. Any thread may call this; the events are
+     * dropped by the game loop, when it takes the next event. Events put in the queue after
+     * this call are kept.
+     */
+    synchronized void clear()
+    {
+        clearTo = tail;
+    }
+
+    /**
+     * Gets the kind of the event taken by next
+     *
+     * @return PRESSED, RELEASED or REPEATED
+     */
+    int getType()
+    {
+        return type;
+    }
+
+    /**
+     * Gets the game action of the event taken by next
+     *
+     * @return the game action
+     */
+    int getAction()
+    {
+        return action;
+    }
+
+    /**
+     * Gets the time of the event taken by next
+     *
+     * @return the time, from System.currentTimeMillis()
+     */
+    long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Gets the number of events dropped because the queue was full
+     *
+     * @return the number of events
+     */
+    int getOverflows()
+    {
+        return overflows;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * File: 	LevelLoader.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a level from a resource, see GameEngine.loadLevel. Levels are made with the LevelConverter
+ * tool, from text and CSV files. All numbers are big endian, as written by a DataOutputStream:
+ * <ul>
+ * <li>int: the magic number 0x504C5631 ("PLV1")</li>
+ * <li>short: tile width, short: tile height</li>
+ * <li>byte: number of tile images, followed by the path of every image (UTF). With 0 images,
+ * the tile images set earlier are used.</li>
+ * <li>short: number of columns of the map, short: number of rows</li>
+ * <li>int: x of the map in the world, int: y of the map</li>
+ * <li>byte: number of layers, followed by the tiles of every layer, row by row, as runs: an unsigned
+ * byte with the length of the run minus 1, followed by the tile number. In the layers after the
+ * first, tile 0 leaves the tile of the layers below.</li>
+ * <li>byte: number of item types, followed by the name of every type (UTF)</li>
+ * <li>short: number of items, followed by every item: byte type (the number in the list of types),
+ * int x, int y, int parameter</li>
+ * </ul>
+ * The tiles are read straight into the rows of the map, nothing else is kept in memory while the
+ * level is read.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class LevelLoader
+{
+    /**
+     * The magic number at the start of a level
+     */
+    static final int MAGIC = 0x504C5631;
+
+    /**
+     * Constructs an instance of this class
+     */
+    private LevelLoader()
+    {
+        // do nothing
+    }
+
+    /**
+     * Read a level: set the tile images and the environment map of the game, and create its items
+     *
+     * @param engine
+     *                the game
+     * @param path
+     *                the path of the resource
+     * @param listener
+     *                creates the items, may be null if the level has no items
+     * @throws GameException
+     *                 if the resource can't be found or read, or is not a level
+     */
+    static void load(GameEngine engine, String path, ISpawnListener listener) throws GameException
+    {
+        InputStream stream = LevelLoader.class.getResourceAsStream(path);
+        if (stream == null)
+        {
+            throw new GameException("The level " + path + " could not be found.");
+        }
+        DataInputStream in = new DataInputStream(stream);
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new GameException("The resource " + path + " is not a level.");
+            }
+            // tile images
+            int tileWidth = in.readUnsignedShort();
+            int tileHeight = in.readUnsignedShort();
+            int nrOfImages = in.readUnsignedByte();
+            if (nrOfImages > 0)
+            {
+                String[] imagePaths = new String[nrOfImages];
+                for (int i = 0; i < nrOfImages; i++)
+                {
+                    imagePaths[i] = in.readUTF();
+                }
+                engine.setTileImages(imagePaths, tileWidth, tileHeight);
+            }
+            // the map
+            int columns = in.readUnsignedShort();
+            int rows = in.readUnsignedShort();
+            int x = in.readInt();
+            int y = in.readInt();
+            int nrOfLayers = in.readUnsignedByte();
+            if (columns > 0 && rows > 0 && nrOfLayers > 0)
+            {
+                byte[][] map = new byte[rows][columns];
+                for (int layer = 0; layer < nrOfLayers; layer++)
+                {
+                    readLayer(in, map, layer > 0);
+                }
+                engine.addEnvironmentMap(map, x, y);
+            }
+            // the items
+            int nrOfTypes = in.readUnsignedByte();
+            String[] types = new String[nrOfTypes];
+            for (int i = 0; i < nrOfTypes; i++)
+            {
+                types[i] = in.readUTF();
+            }
+            int nrOfItems = in.readUnsignedShort();
+            if (nrOfItems > 0 && listener == null)
+            {
+                throw new GameException("The level " + path + " has items, but there is no ISpawnListener to create them.");
+            }
+            for (int i = 0; i < nrOfItems; i++)
+            {
+                int type = in.readUnsignedByte();
+                int itemX = in.readInt();
+                int itemY = in.readInt();
+                int parameter = in.readInt();
+                if (type >= nrOfTypes)
+                {
+                    throw new GameException("The resource " + path + " is not a level.");
+                }
+                listener.spawnItem(types[type], itemX, itemY, parameter);
+            }
+        } catch (IOException e)
+        {
+            throw new GameException("The level " + path + " could not be read.");
+        } finally
+        {
+            try
+            {
+                in.close();
+            } catch (IOException e)
+            {
+                // nothing to be done
+            }
+        }
+    }
+
+    /**
+     * Read the runs of a layer into the map, row by row. A run may go on in the next row.
+     *
+     * @param in
+     *                the stream
+     * @param map
+     *                the map, map[row][column]
+     * @param overlay
+     *                true if tile 0 must leave the tile that is already in the map
+     * @throws IOException
+     *                 if the stream can't be read, or the runs don't fit the map
+     */
+    private static void readLayer(DataInputStream in, byte[][] map, boolean overlay) throws IOException
+    {
+        int columns = map[0].length;
+        int row = 0;
+        int column = 0;
+        int left = columns * map.length;
+        while (left > 0)
+        {
+            int length = in.readUnsignedByte() + 1;
+            byte tile = in.readByte();
+            if (length > left)
+            {
+                throw new IOException("run too long");
+            }
+            left -= length;
+            while (length > 0)
+            {   // the part of the run that is in this row
+                int n = Math.min(length, columns - column);
+                if (!overlay || tile != TileMap.NO_TILE)
+                {
+                    byte[] line = map[row];
+                    for (int i = column; i < column + n; i++)
+                    {
+                        line[i] = tile;
+                    }
+                }
+                length -= n;
+                column += n;
+                if (column == columns)
+                {
+                    column = 0;
+                    row++;
+                }
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@
  */
 package phonegame;
 
+import phonegame.utils.FastMath;
 import phonegame.utils.Tools;
 
 /**
@@ -22,6 +23,22 @@ import phonegame.utils.Tools;
  */
 public abstract class MoveableGameItem extends GameItem
 {
+    /**
+     * The number 1 as a 16.16 fixed-point number
+     */
+    static final int FIXED_ONE = 1 << 16;
+
+    /**
+     * The number 1 as a 2.30 fixed-point number, for values between -1 and 1
+     */
+    private static final int UNIT_ONE = FastMath.UNIT_ONE;
+
+    /**
+     * The largest drift kept without sub-pixel movement, 16384 pixels as a 16.16 fixed-point number,
+     * so that adding one more move can not overflow
+     */
+    private static final int MAX_DRIFT = 1 << 30;
+
     /**
      * Speed of the item in pixels. This is zero at the start.
      * <p/>
@@ -57,6 +74,40 @@ public abstract class MoveableGameItem extends GameItem
      */
     private double friction = 1.0;
 
+    /**
+     * Speed as 16.16 fixed-point number (the value times 65536), sine and cosine of direction and 
+     * friction as 2.30 fixed-point numbers (the value times 2^30), for engines that move items with 
+     * integers only (see GameEngine.setFixedPointKinematics). Direction and friction are precise enough 
+     * to give the same pixels as the doubles, also when a move ends near half a pixel.
+     * Direction and friction are kept equal to the doubles. The speed changes in every move, so only 
+     * the one used by the last move is up to date, see speedIsFixed.
+     */
+    private int fxSpeed = 0, fxSin = 0, fxCos = UNIT_ONE, fxFriction = UNIT_ONE;
+
+    /**
+     * true if fxSpeed is the current speed, false if speedInPixels is
+     */
+    private boolean speedIsFixed = false;
+
+    /**
+     * true if fxSin and fxCos have been set with integers only (moveTowardsAPoint), and sindir 
+     * and cosdir must still be calculated from them, see syncDirection
+     */
+    private boolean directionIsFixed = false;
+
+    /**
+     * The part of the moves that has not been done because positions are whole pixels, since the last
+     * setPosition, as 16.16 fixed-point numbers. With sub-pixel movement this part is added to the next
+     * move, see GameEngine.setSubPixelMovement. Without it, this is the drift, for reporting only.
+     */
+    private int errorX, errorY;
+
+    /**
+     * true if errorX and errorY were kept with sub-pixel movement. When the mode changes the errors
+     * start again from 0, so the drift of rounded moves is never added to a move.
+     */
+    private boolean errorIsRest = false;
+
     /**
      * startposition of item: x
      */
@@ -99,6 +150,8 @@ public abstract class MoveableGameItem extends GameItem
     {
         super.setPosition(x, y);
         setPrevious();
+        errorX = 0;
+        errorY = 0;
         if (startPosition)
         {
             startXPosition = x;
@@ -114,6 +167,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public boolean hasCollisionDetection()
     {	
+        if (store != null)
+            return (store.flags[slot] & ItemStore.DETECT) != 0;
         return collisionDetection;
     }
     
@@ -127,7 +182,46 @@ public abstract class MoveableGameItem extends GameItem
      */
     public void setCollisionDetection(boolean cd)
     {	
-        collisionDetection = cd;
+        if (store != null)
+        {
+            if (cd)
+                store.flags[slot] |= ItemStore.DETECT;
+            else
+                store.flags[slot] &= ~ItemStore.DETECT;
+        } else
+        {
+            collisionDetection = cd;
+        }
+    }
+
+    /**
+     * Put this item in the store, including previous position and collision detection.
+     * To be used by ItemStore only!
+     * 
+     * @see phonegame.GameItem#attach(phonegame.ItemStore, int)
+     */
+    void attach(ItemStore s, int index)
+    {
+        super.attach(s, index);
+        s.prevX[index] = prevX;
+        s.prevY[index] = prevY;
+        s.flags[index] |= ItemStore.MOVEABLE;
+        if (collisionDetection)
+            s.flags[index] |= ItemStore.DETECT;
+    }
+
+    /**
+     * Take this item out of the store, including previous position and collision detection.
+     * To be used by ItemStore only!
+     * 
+     * @see phonegame.GameItem#detach()
+     */
+    void detach()
+    {
+        prevX = store.prevX[slot];
+        prevY = store.prevY[slot];
+        collisionDetection = (store.flags[slot] & ItemStore.DETECT) != 0;
+        super.detach();
     }
     
     /**
@@ -149,6 +243,7 @@ public abstract class MoveableGameItem extends GameItem
     public void setSpeed(double speed)
     {
         speedInPixels = speed;
+        speedIsFixed = false;
     }
 
     /**
@@ -164,6 +259,7 @@ public abstract class MoveableGameItem extends GameItem
     public void setFriction(double fpfriction)
     {
         friction = 1-fpfriction;
+        fxFriction = toFixed(friction, UNIT_ONE);
     }
 
     /**
@@ -175,8 +271,7 @@ public abstract class MoveableGameItem extends GameItem
      */
     public void setDirectionRadians(double radian)
     {
-        sindir = -Math.sin(radian);
-        cosdir = Math.cos(radian);
+        setDirectionVector(Math.cos(radian), -Math.sin(radian));
     }
 
     /**
@@ -189,7 +284,11 @@ public abstract class MoveableGameItem extends GameItem
      */
     public void setDirection(int degrees)
     {
-        setDirectionRadians( Math.toRadians(degrees % 360) );
+        cosdir = FastMath.cos(degrees);
+        sindir = -FastMath.sin(degrees);
+        fxCos = FastMath.cosFixed(degrees);
+        fxSin = -FastMath.sinFixed(degrees);
+        directionIsFixed = false;
     }
 
     /**
@@ -223,10 +322,33 @@ public abstract class MoveableGameItem extends GameItem
      * @param yspeed x-speed as double, in pixels
      */
     private void setXYSpeed(double xspeed, double yspeed)
-    {	speedInPixels = Math.sqrt(xspeed*xspeed + yspeed*yspeed);
+    {	setSpeed(Math.sqrt(xspeed*xspeed + yspeed*yspeed));
     	if ( speedInPixels > 0 )
-    	{	sindir = yspeed/speedInPixels;
-    		cosdir = xspeed/speedInPixels;
+    	{	setDirectionVector(xspeed/speedInPixels, yspeed/speedInPixels);
+    	}
+    }
+
+    /**
+     * Set the cosine and sine of the direction, both as doubles and as fixed-point numbers.
+     * @param cos cosine of direction
+     * @param sin sine of direction (inverted, see sindir)
+     */
+    private void setDirectionVector(double cos, double sin)
+    {	cosdir = cos;
+    	sindir = sin;
+    	fxCos = toFixed(cos, UNIT_ONE);
+    	fxSin = toFixed(sin, UNIT_ONE);
+    	directionIsFixed = false;
+    }
+
+    /**
+     * Calculate sindir and cosdir, if the direction has been set with integers only.
+     */
+    private void syncDirection()
+    {	if (directionIsFixed)
+    	{	cosdir = (double) fxCos / UNIT_ONE;
+    		sindir = (double) fxSin / UNIT_ONE;
+    		directionIsFixed = false;
     	}
     }
 
@@ -242,7 +364,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public void setXSpeed(double xspeed)
     {
-        setXYSpeed(xspeed, speedInPixels*sindir);
+        syncDirection();
+        setXYSpeed(xspeed, getSpeed()*sindir);
     }
     
     /**
@@ -257,44 +380,33 @@ public abstract class MoveableGameItem extends GameItem
      */
     public void setYSpeed(double yspeed)
     {
-        setXYSpeed(speedInPixels*cosdir, yspeed);
+        syncDirection();
+        setXYSpeed(getSpeed()*cosdir, yspeed);
     }
 
     
     /**
      * Gets the current direction in radians.
      * 
-     * @return double, direction in radians
+     * @return double, direction in radians, between 0 and 2*pi
      */
     public double getDirectionRadians()
-    {	// calculate arcsin of the smaller value of cos and sin
-        if ( Math.abs(cosdir) < Math.abs(sindir) )
-        {
-            if ( sindir < 0 )				// == -sindir>0, boven dus
-                return Math.PI/2 - Tools.arcsin(cosdir);
-            else
-                return Math.PI + Math.PI/2 + Tools.arcsin(cosdir);
-        } else
-        {
-            if ( cosdir > 0 )			// rechterkant
-                return Tools.arcsin(-sindir);
-            else
-                return Math.PI - Tools.arcsin(-sindir);
-        }
+    {	// fxSin is inverted, like sindir
+        return Math.toRadians( (double) FastMath.atan2(-fxSin, fxCos) / FastMath.DEGREE );
     }
     
     /**
      * Gets the current direction in degrees.
      * <br/>
-     * Note: You can get small errors because of rounding. Also you may get
-     * the value -60, when you had set the value originally to 300! So watch it
+     * Note: You can get small errors because of rounding. Also you will get
+     * the value 300, when you had set the value originally to -60! So watch it
      * when you make tests like 'if (getDirection() == nnn )' !
      * 
-     * @return integer, direction in degrees
+     * @return integer, direction in degrees, between 0 and 359
      */
     public int getDirection()
-    {		// trick with 360 to avoid negative results...
-        return (360+Tools.round(Math.toDegrees(getDirectionRadians())))%360;
+    {		// round the fixed-point angle, 360 becomes 0
+        return ((FastMath.atan2(-fxSin, fxCos) + FastMath.DEGREE / 2) >> 16) % 360;
     }
     
     /**
@@ -304,6 +416,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public double getSpeed()
     {	
+        if (speedIsFixed)
+            return (double) fxSpeed / FIXED_ONE;
         return speedInPixels;
     }
     
@@ -314,7 +428,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public double getXSpeed()
     {	
-        return speedInPixels*cosdir;
+        syncDirection();
+        return getSpeed()*cosdir;
     }
     
     /**
@@ -325,7 +440,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public double getYSpeed()
     {	
-        return speedInPixels*sindir;
+        syncDirection();
+        return getSpeed()*sindir;
     }
     
     /**
@@ -345,7 +461,7 @@ public abstract class MoveableGameItem extends GameItem
      */
     public final boolean movesLeft()
     {	// look at position, rather than cosdir: player may not have speed!
-        return (getX()<prevX);
+        return (getX()<getPrevX());
     }
 
     /**
@@ -355,7 +471,7 @@ public abstract class MoveableGameItem extends GameItem
      */
     public final boolean movesUp()
     {
-        return (getY()<prevY);
+        return (getY()<getPrevY());
     }
 
     /**
@@ -394,6 +510,8 @@ public abstract class MoveableGameItem extends GameItem
 
     /**
      * The item moves towards a defined point with the current speed.
+     * The direction is calculated with integers only, so you can call this in every cycle.
+     * If the item is at the point already, the direction does not change.
      * 
      * @param otherXPosition
      *            X position of the point
@@ -404,9 +522,13 @@ public abstract class MoveableGameItem extends GameItem
     {
         int dx = otherXPosition - getX();
         int dy = otherYPosition - getY();
-        double distance = Math.sqrt(dx * dx + dy * dy);
-        sindir = dy/distance;
-        cosdir = dx/distance;
+        int inv = FastMath.invLength(dx, dy);
+        if (inv > 0)
+        {
+            fxCos = dx * inv;
+            fxSin = dy * inv;
+            directionIsFixed = true;
+        }
     }
 
     /**
@@ -416,8 +538,15 @@ public abstract class MoveableGameItem extends GameItem
      */
     final void setPrevious()
     {
-        prevX = getX();
-        prevY = getY();
+        if (store != null)
+        {
+            store.prevX[slot] = store.x[slot];
+            store.prevY[slot] = store.y[slot];
+        } else
+        {
+            prevX = getX();
+            prevY = getY();
+        }
     }
     
     /**
@@ -428,6 +557,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public final int getPrevX()
     {
+        if (store != null)
+            return store.prevX[slot];
         return prevX;
     }
 
@@ -439,6 +570,8 @@ public abstract class MoveableGameItem extends GameItem
      */
     public final int getPrevY()
     {
+        if (store != null)
+            return store.prevY[slot];
         return prevY;
     }
 
@@ -451,6 +584,7 @@ public abstract class MoveableGameItem extends GameItem
      */
     final double getXFactor(int colx)
     {
+        int prevX = getPrevX();
         if (getX() == prevX)
         {	// the calculation is not quite right (since (colx-prevx)/0 is not equal to 1.... 
             // but it is ok for collision detection, because >=1 means 'no collision'
@@ -470,6 +604,7 @@ public abstract class MoveableGameItem extends GameItem
      */
     final double getYFactor(int coly)
     {
+        int prevY = getPrevY();
         if (getY() == prevY)
         {
             return 1;
@@ -479,6 +614,42 @@ public abstract class MoveableGameItem extends GameItem
         }
     }
 
+    /**
+     * Gets the fraction of the x-move up to a collision with a tile, like getXFactor,
+     * as a 16.16 fixed-point number. Used by engines that move items with integers only.
+     * 
+     * @return the fraction of the x-move, FIXED_ONE or more if the collision is not reached
+     */
+    final int getXFactorFixed(int colx)
+    {
+        int prevX = getPrevX();
+        if (getX() == prevX)
+        {
+            return FIXED_ONE;
+        } else
+        {
+            return ((colx - prevX) << 16) / (getX() - prevX);
+        }
+    }
+
+    /**
+     * Gets the fraction of the y-move up to a collision with a tile, like getYFactor,
+     * as a 16.16 fixed-point number. Used by engines that move items with integers only.
+     * 
+     * @return the fraction of the y-move, FIXED_ONE or more if the collision is not reached
+     */
+    final int getYFactorFixed(int coly)
+    {
+        int prevY = getPrevY();
+        if (getY() == prevY)
+        {
+            return FIXED_ONE;
+        } else
+        {
+            return ((coly - prevY) << 16) / (getY() - prevY);
+        }
+    }
+
     /**
      * Determines the y that matches the partial x movement when a horizontal
      * collision occurs utility method for collision detection, especially when
@@ -491,6 +662,7 @@ public abstract class MoveableGameItem extends GameItem
      */
     final int getMatchingY(double xfactor)
     {
+        int prevY = getPrevY();
         return prevY + Tools.round(xfactor*(getY() - prevY));
     }
 
@@ -506,15 +678,42 @@ public abstract class MoveableGameItem extends GameItem
      */
     final int getMatchingX(double yfactor)
     {
+        int prevX = getPrevX();
         return prevX + Tools.round(yfactor*(getX() - prevX));
     }
 
+    /**
+     * Determines the y that matches the partial x movement, like getMatchingY, 
+     * with a fixed-point factor.
+     * 
+     * @param xfactor the factor of the x-move up to the collision, a 16.16 fixed-point number
+     * @return the corresponding y-pos
+     */
+    final int getMatchingYFixed(int xfactor)
+    {
+        int prevY = getPrevY();
+        return prevY + roundFixed(xfactor*(getY() - prevY));
+    }
+
+    /**
+     * Determines the x that matches the partial y movement, like getMatchingX, 
+     * with a fixed-point factor.
+     * 
+     * @param yfactor the factor of the y-move up to the collision, a 16.16 fixed-point number
+     * @return the corresponding x-pos
+     */
+    final int getMatchingXFixed(int yfactor)
+    {
+        int prevX = getPrevX();
+        return prevX + roundFixed(yfactor*(getX() - prevX));
+    }
+
     /**
      * Undo last move. Typically used after a tile collision has happened
      */
     public void undoMove()
     { // just go back, no collision detection
-        setPosition(prevX, prevY);
+        setPosition(getPrevX(), getPrevY());
     }
 
     /**
@@ -598,6 +797,7 @@ public abstract class MoveableGameItem extends GameItem
     public final void reverseHorizontalDirection()
     {
         cosdir = -cosdir; 
+        fxCos = -fxCos;
     }
 
     /**
@@ -606,6 +806,7 @@ public abstract class MoveableGameItem extends GameItem
     public final void reverseVerticalDirection()
     {
         sindir = -sindir; // assumption: - is ok for FP-numbers!
+        fxSin = -fxSin;
     }
 
     /**
@@ -614,18 +815,169 @@ public abstract class MoveableGameItem extends GameItem
      * the GameItem to its new position (according to speed and direction).
      */
     
-    final void move()
+    final void move(boolean subPixel)
     {
-    	prevX = getX();
-        prevY = getY();
+        setPrevious();
+        if (speedIsFixed)
+        {	// last move was done with integers
+            speedInPixels = (double) fxSpeed / FIXED_ONE;
+            speedIsFixed = false;
+        }
+        syncDirection();
         if (speedInPixels > 0)
         {
             speedInPixels = friction * speedInPixels;
             double dx = cosdir * speedInPixels;
             double dy = sindir * speedInPixels;
-            setX(getX() + Tools.round(dx));
-            setY(getY() + Tools.round(dy));
+            moveBy(toFixed(dx, FIXED_ONE), toFixed(dy, FIXED_ONE), Tools.round(dx), Tools.round(dy), subPixel);
+        }
+    }
+
+    /**
+     * Move a MoveableGameItem, like move(), but with integers only: speed, direction and friction
+     * are fixed-point numbers. For phones without floating point hardware.
+     * 
+     * @param subPixel true to add the part of the previous moves that has not been done
+     */
+    final void moveFixed(boolean subPixel)
+    {
+        setPrevious();
+        if (!speedIsFixed)
+        {	// speed has been set, or last move was done with doubles
+            fxSpeed = toFixed(speedInPixels, FIXED_ONE);
+            speedIsFixed = true;
+        }
+        if (fxSpeed > 0)
+        {
+            if (fxFriction != UNIT_ONE)
+            {
+                fxSpeed = (int) (((long) fxFriction * fxSpeed + (UNIT_ONE >> 1)) >> 30);
+            }
+            // 2.30 times 16.16 gives 16.16 after a shift of 30, rounded like toFixed
+            int dx = (int) (((long) fxCos * fxSpeed + (UNIT_ONE >> 1)) >> 30);
+            int dy = (int) (((long) fxSin * fxSpeed + (UNIT_ONE >> 1)) >> 30);
+            moveBy(dx, dy, roundFixed(dx), roundFixed(dy), subPixel);
+        }
+    }
+
+    /**
+     * Do the whole pixels of a move. Without sub-pixel movement the item moves the rounded
+     * distances, and the rest is added to the error, which stops growing at MAX_DRIFT. With sub-pixel
+     * movement the error is added to the move first, and what is left of it after rounding is kept 
+     * for the next move. The error is dropped when the mode changes.
+     * 
+     * @param dx the horizontal distance, 16.16 fixed-point
+     * @param dy the vertical distance, 16.16 fixed-point
+     * @param roundedX the horizontal distance in whole pixels
+     * @param roundedY the vertical distance in whole pixels
+     * @param subPixel true for sub-pixel movement
+     */
+    private void moveBy(int dx, int dy, int roundedX, int roundedY, boolean subPixel)
+    {
+        if (subPixel != errorIsRest)
+        {
+            errorX = 0;
+            errorY = 0;
+            errorIsRest = subPixel;
+        }
+        if (subPixel)
+        {
+            dx += errorX;
+            dy += errorY;
+            roundedX = roundFixed(dx);
+            roundedY = roundFixed(dy);
+            errorX = dx - (roundedX << 16);
+            errorY = dy - (roundedY << 16);
+        } else
+        {
+            errorX = addDrift(errorX, dx - (roundedX << 16));
+            errorY = addDrift(errorY, dy - (roundedY << 16));
         }
+        setX(getX() + roundedX);
+        setY(getY() + roundedY);
+    }
+
+    /**
+     * Add the rounding of one move to the drift, without going past MAX_DRIFT either way
+     * 
+     * @param drift the drift so far, 16.16 fixed-point
+     * @param rest the part of the move that has not been done, 16.16 fixed-point
+     * @return the new drift
+     */
+    private static int addDrift(int drift, int rest)
+    {
+        drift += rest;
+        if (drift > MAX_DRIFT)
+        {
+            return MAX_DRIFT;
+        }
+        if (drift < -MAX_DRIFT)
+        {
+            return -MAX_DRIFT;
+        }
+        return drift;
+    }
+
+    /**
+     * Get the horizontal distance that the item has not moved because positions are whole pixels,
+     * since the last setPosition (or bounce, moveUpto, etc.). With sub-pixel movement (see 
+     * GameEngine.setSubPixelMovement) this is never more than half a pixel, it is the rest of the moves
+     * that will be done later. Without it, this is the distance the item has drifted off its course,
+     * up to 16384 pixels either way, and it is dropped when sub-pixel movement is switched on.
+     * 
+     * @return the distance in pixels, positive to the right
+     */
+    public double getSubPixelErrorX()
+    {
+        return (double) errorX / FIXED_ONE;
+    }
+
+    /**
+     * Get the vertical distance that the item has not moved because positions are whole pixels,
+     * see getSubPixelErrorX.
+     * 
+     * @return the distance in pixels, positive downwards
+     */
+    public double getSubPixelErrorY()
+    {
+        return (double) errorY / FIXED_ONE;
+    }
+
+    /**
+     * Find out if the item has speed, without floating point arithmetic
+     * 
+     * @return true if the speed is greater than zero
+     */
+    final boolean hasSpeed()
+    {
+        if (speedIsFixed)
+            return fxSpeed > 0;
+        return speedInPixels > 0;
+    }
+
+    /**
+     * Convert a double to a fixed-point number
+     * 
+     * @param d the double
+     * @param one the fixed-point number for 1: FIXED_ONE or UNIT_ONE
+     * @return the nearest fixed-point number
+     */
+    private static int toFixed(double d, int one)
+    {
+        return (int) (d < 0 ? d * one - 0.5 : d * one + 0.5);
+    }
+
+    /**
+     * Round a 16.16 fixed-point number to the nearest int, halves away from zero like Tools.round
+     * 
+     * @param f the fixed-point number
+     * @return the rounded number
+     */
+    private static int roundFixed(int f)
+    {
+        if (f < 0)
+            return -((-f + (FIXED_ONE >> 1)) >> 16);
+        return (f + (FIXED_ONE >> 1)) >> 16;
     }
 
     /**
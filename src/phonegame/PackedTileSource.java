@@ -0,0 +1,264 @@
+/*
+ * File: 	PackedTileSource.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the chunks of a big tile map from a resource in the jar, when the game needs them.
+ * Use it with GameEngine.addEnvironmentMap(ITileChunkSource, int, int).
+ * <br/>
+ * The resource is a packed tile map. All numbers are big endian, as written by a DataOutputStream:
+ * <ul>
+ * <li>int: the magic number 0x50544D31 ("PTM1")</li>
+ * <li>short: number of columns of tiles, short: number of rows</li>
+ * <li>short: chunk size, a power of 2</li>
+ * <li>int for every chunk, row by row: where its tiles start, counted from the end of this table,
+ * -1 for a chunk without tiles</li>
+ * <li>the tiles of the chunks, as runs: an unsigned byte with the length of the run minus 1,
+ * followed by the tile number</li>
+ * </ul>
+ * The resource is read forward, so chunks that are loaded in the order they are stored (for
+ * example while the viewport moves down) don't make it open the resource again.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class PackedTileSource implements ITileChunkSource
+{
+    /**
+     * The magic number at the start of a packed tile map
+     */
+    public static final int MAGIC = 0x50544D31;
+
+    /**
+     * Path of the resource
+     */
+    private String path;
+
+    private int columns, rows, chunkSize;
+
+    /**
+     * Start of the tiles of every chunk, after the table, -1 if the chunk has no tiles
+     */
+    private int[] offsets;
+
+    /**
+     * Size of the header and table
+     */
+    private int dataStart;
+
+    /**
+     * The open resource, and the position in it
+     */
+    private DataInputStream in;
+
+    private int position;
+
+    /**
+     * Constructs a source for a packed tile map, and reads its header
+     *
+     * @param path
+     *                the path of the resource, for example "/levels/world.ptm"
+     * @throws GameException
+     *                 if the resource can't be found or is not a packed tile map
+     */
+    public PackedTileSource(String path) throws GameException
+    {
+        this.path = path;
+        try
+        {
+            open();
+            int magic = in.readInt();
+            columns = in.readUnsignedShort();
+            rows = in.readUnsignedShort();
+            chunkSize = in.readUnsignedShort();
+            if (magic != MAGIC || chunkSize == 0)
+            {
+                close();
+                throw new GameException("The resource " + path + " is not a packed tile map.");
+            }
+            int chunkColumns = (columns + chunkSize - 1) / chunkSize;
+            int chunkRows = (rows + chunkSize - 1) / chunkSize;
+            offsets = new int[chunkColumns * chunkRows];
+            for (int i = 0; i < offsets.length; i++)
+            {
+                offsets[i] = in.readInt();
+            }
+            dataStart = 10 + 4 * offsets.length;
+            position = dataStart;
+        } catch (IOException e)
+        {
+            close();
+            throw new GameException("The tile map " + path + " could not be read.");
+        }
+    }
+
+    /**
+     * Gets the width of the map
+     *
+     * @return the number of columns of tiles
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Gets the height of the map
+     *
+     * @return the number of rows of tiles
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Gets the size of the chunks
+     *
+     * @return the number of tiles in a row and in a column of a chunk
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Read the tiles of a chunk from the resource
+     *
+     * @param chunkColumn
+     *                the column of the chunk
+     * @param chunkRow
+     *                the row of the chunk
+     * @param tiles
+     *                the array to put the tile numbers in
+     * @throws GameException
+     *                 if the resource can't be read
+     */
+    public void loadChunk(int chunkColumn, int chunkRow, byte[] tiles) throws GameException
+    {
+        int chunkColumns = (columns + chunkSize - 1) / chunkSize;
+        int offset = offsets[chunkRow * chunkColumns + chunkColumn];
+        if (offset < 0)
+        {   // no tiles
+            for (int i = 0; i < tiles.length; i++)
+            {
+                tiles[i] = TileMap.NO_TILE;
+            }
+            return;
+        }
+        try
+        {
+            if (in == null || dataStart + offset < position)
+            {   // behind us: start again
+                close();
+                open();
+                position = 0;
+            }
+            skip(dataStart + offset - position);
+            position += readRuns(in, tiles, 0, chunkSize * chunkSize);
+        } catch (IOException e)
+        {
+            close();
+            throw new GameException("The tile map " + path + " could not be read.");
+        }
+    }
+
+    /**
+     * Close the resource. It is opened again when another chunk is needed.
+     */
+    public void close()
+    {
+        if (in != null)
+        {
+            try
+            {
+                in.close();
+            } catch (IOException e)
+            {
+                // nothing to be done
+            }
+            in = null;
+        }
+    }
+
+    /**
+     * Read tiles that are stored as runs: an unsigned byte with the length of the run minus 1,
+     * followed by the tile number.
+     *
+     * @param in
+     *                the stream
+     * @param tiles
+     *                the array to put the tile numbers in
+     * @param offset
+     *                where the first tile goes
+     * @param count
+     *                the number of tiles to read
+     * @return the number of bytes read
+     * @throws IOException
+     *                 if the stream can't be read, or a run is longer than the number of tiles
+     */
+    static int readRuns(DataInputStream in, byte[] tiles, int offset, int count) throws IOException
+    {
+        int end = offset + count;
+        int bytes = 0;
+        while (offset < end)
+        {
+            int length = in.readUnsignedByte() + 1;
+            byte tile = in.readByte();
+            bytes += 2;
+            if (offset + length > end)
+            {
+                throw new IOException("run too long");
+            }
+            for (int i = 0; i < length; i++)
+            {
+                tiles[offset++] = tile;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Open the resource
+     *
+     * @throws IOException
+     *                 if the resource can't be found
+     */
+    private void open() throws IOException
+    {
+        InputStream stream = PackedTileSource.class.getResourceAsStream(path);
+        if (stream == null)
+        {
+            throw new IOException(path);
+        }
+        in = new DataInputStream(stream);
+    }
+
+    /**
+     * Skip bytes of the resource
+     *
+     * @param n
+     *                the number of bytes
+     * @throws IOException
+     *                 if the resource ends
+     */
+    private void skip(int n) throws IOException
+    {
+        while (n > 0)
+        {
+            int skipped = in.skipBytes(n);
+            if (skipped <= 0)
+            {   // skipBytes may stop early, read a byte to find out if the resource has ended
+                in.readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+            position += skipped;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * File: 	SpatialHashBroadphase.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * A uniform grid (spatial hash) that narrows down the collision detection between items.
+ * <br/>
+ * Every active item is entered in all cells of the grid that its frame overlaps. Only items
+ * that share a cell are tested against each other, so items that are far apart are never compared.
+ * The cells are hashed into a number of buckets, so the grid needs no bounds and
+ * works for any size of the world.
+ * <br/>
+ * Choose a cell size that is about the size of the bigger items in your game.
+ * When the cells are much smaller, items are entered in many cells; when the cells
+ * are much bigger, many items share a cell and the grid doesn't help much.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class SpatialHashBroadphase implements ICollisionBroadphase
+{
+    /**
+     * Minimal number of buckets in the hash table
+     */
+    private static final int MIN_BUCKETS = 64;
+
+    /**
+     * Marks the end of a list of entries
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Width and height of a cell in pixels
+     */
+    private int cellSize;
+
+    /**
+     * First entry of every bucket, NONE if the bucket is empty
+     */
+    private int[] bucketHead;
+
+    /**
+     * Mask to turn a hash into a bucket index (number of buckets is a power of two)
+     */
+    private int bucketMask;
+
+    /**
+     * Entries, that is: (item, cell) combinations, as linked lists per bucket
+     */
+    private int[] entryNext, entryItem, entryCellX, entryCellY;
+
+    private int nrOfEntries;
+
+    /**
+     * Constructs a grid with the given cell size
+     *
+     * @param cellSize
+     *                width and height of a cell, in pixels
+     * @throws GameException
+     *                if the cell size is not positive
+     */
+    public SpatialHashBroadphase(int cellSize) throws GameException
+    {
+        if (cellSize <= 0)
+        {
+            throw new GameException("The cell size of the collision grid must be positive");
+        }
+        this.cellSize = cellSize;
+        bucketHead = new int[MIN_BUCKETS];
+        bucketMask = MIN_BUCKETS - 1;
+        entryNext = new int[MIN_BUCKETS];
+        entryItem = new int[MIN_BUCKETS];
+        entryCellX = new int[MIN_BUCKETS];
+        entryCellY = new int[MIN_BUCKETS];
+    }
+
+    /**
+     * Gets the size of the cells
+     *
+     * @return width and height of a cell, in pixels
+     */
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Enter all active items in the grid and test the items that share a cell.
+     *
+     * @see phonegame.ICollisionBroadphase#findCollisions(phonegame.CollisionSet)
+     */
+    public void findCollisions(CollisionSet items)
+    {
+        nrOfEntries = 0;
+        clearBuckets(items.size());
+        for (int i = 0; i < items.size(); i++)
+        {
+            if (items.isActive(i))
+            {
+                addItem(items, i);
+            }
+        }
+        for (int b = 0; b <= bucketMask; b++)
+        {
+            for (int e1 = bucketHead[b]; e1 != NONE; e1 = entryNext[e1])
+            {
+                for (int e2 = entryNext[e1]; e2 != NONE; e2 = entryNext[e2])
+                {
+                    if (entryCellX[e1] == entryCellX[e2] && entryCellY[e1] == entryCellY[e2])
+                    {
+                        testPair(items, entryItem[e1], entryItem[e2], entryCellX[e1], entryCellY[e1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Make sure there are about two buckets per item, and empty them.
+     * The table only grows, so in a running game there will be no allocation.
+     *
+     * @param size the number of items
+     */
+    private void clearBuckets(int size)
+    {
+        if (bucketHead.length < 2 * size)
+        {
+            int length = bucketHead.length;
+            while (length < 2 * size)
+            {
+                length *= 2;
+            }
+            bucketHead = new int[length];
+            bucketMask = length - 1;
+        }
+        for (int b = 0; b <= bucketMask; b++)
+        {
+            bucketHead[b] = NONE;
+        }
+    }
+
+    /**
+     * Enter an item in all cells that its frame overlaps
+     *
+     * @param items the items of the game
+     * @param i the index of the item
+     */
+    private void addItem(CollisionSet items, int i)
+    {   // zero sized frames still occupy the cell of their position
+        int firstX = cell(items.getX(i));
+        int lastX = cell(items.getX(i) + Math.max(items.getWidth(i), 1) - 1);
+        int firstY = cell(items.getY(i));
+        int lastY = cell(items.getY(i) + Math.max(items.getHeight(i), 1) - 1);
+        for (int cy = firstY; cy <= lastY; cy++)
+        {
+            for (int cx = firstX; cx <= lastX; cx++)
+            {
+                if (nrOfEntries == entryItem.length)
+                {
+                    growEntries();
+                }
+                int b = (cx * 73856093 ^ cy * 19349663) & bucketMask;
+                entryItem[nrOfEntries] = i;
+                entryCellX[nrOfEntries] = cx;
+                entryCellY[nrOfEntries] = cy;
+                entryNext[nrOfEntries] = bucketHead[b];
+                bucketHead[b] = nrOfEntries;
+                nrOfEntries++;
+            }
+        }
+    }
+
+    /**
+     * Test a pair of items that share the given cell. A pair that shares several cells is
+     * only tested in the cell that holds the top left corner of the overlapping area, so every pair
+     * is tested once. (If the items don't overlap there is no such corner, but then the test
+     * would fail anyway.)
+     *
+     * @param items the items of the game
+     * @param a index of the first item
+     * @param b index of the second item
+     * @param cx x of the shared cell
+     * @param cy y of the shared cell
+     */
+    private void testPair(CollisionSet items, int a, int b, int cx, int cy)
+    {
+        if (cell(Math.max(items.getX(a), items.getX(b))) == cx && cell(Math.max(items.getY(a), items.getY(b))) == cy)
+        {
+            items.test(a, b);
+        }
+    }
+
+    /**
+     * Double the capacity of the entry arrays
+     */
+    private void growEntries()
+    {
+        int length = 2 * entryItem.length;
+        int[] next = new int[length];
+        int[] item = new int[length];
+        int[] cellX = new int[length];
+        int[] cellY = new int[length];
+        System.arraycopy(entryNext, 0, next, 0, nrOfEntries);
+        System.arraycopy(entryItem, 0, item, 0, nrOfEntries);
+        System.arraycopy(entryCellX, 0, cellX, 0, nrOfEntries);
+        System.arraycopy(entryCellY, 0, cellY, 0, nrOfEntries);
+        entryNext = next;
+        entryItem = item;
+        entryCellX = cellX;
+        entryCellY = cellY;
+    }
+
+    /**
+     * Gets the cell that contains a coordinate, rounding down for negative coordinates
+     *
+     * @param v an x or y coordinate
+     * @return the cell index
+     */
+    private int cell(int v)
+    {
+        if (v >= 0)
+            return v / cellSize;
+        return -((-v - 1) / cellSize) - 1;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * File: 	SweepAndPruneBroadphase.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * A broadphase that keeps the items sorted on their x-position and only tests items
+ * whose horizontal ranges overlap ('sweep and prune').
+ * <br/>
+ * The sorted order is kept from one cycle to the next. Between two cycles most items move
+ * just a few pixels, so the order is nearly right and an insertion sort repairs it in about
+ * linear time. This works best in games with many slow or static items, spread out horizontally.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class SweepAndPruneBroadphase implements ICollisionBroadphase
+{
+    /**
+     * The items, sorted on x. Kept between cycles.
+     */
+    private GameItem[] sorted = new GameItem[16];
+
+    /**
+     * The index in the CollisionSet of every sorted item, for the current cycle
+     */
+    private int[] index = new int[16];
+
+    private int nrSorted;
+
+    /**
+     * The cycle in which an index of the CollisionSet has been seen, to find new items
+     */
+    private int[] seen = new int[16];
+
+    private int stamp;
+
+    /**
+     * Update the sorted list and test the items whose x-ranges overlap.
+     *
+     * @see phonegame.ICollisionBroadphase#findCollisions(phonegame.CollisionSet)
+     */
+    public void findCollisions(CollisionSet items)
+    {
+        update(items);
+        sort(items);
+        // sweep: compare every item with the items after it that start within its width
+        for (int k = 0; k < nrSorted; k++)
+        {
+            int a = index[k];
+            int right = items.getX(a) + items.getWidth(a);
+            for (int m = k + 1; m < nrSorted && items.getX(index[m]) < right; m++)
+            {
+                items.test(a, index[m]);
+            }
+        }
+    }
+
+    /**
+     * Drop the items that have left the game and add the new ones at the end.
+     * New items will be moved to their place by the sort.
+     *
+     * @param items the items of the game
+     */
+    private void update(CollisionSet items)
+    {
+        int size = items.size();
+        if (seen.length < size)
+        {
+            seen = new int[Math.max(size, 2 * seen.length)];
+            stamp = 0;
+        }
+        stamp++;
+        if (stamp == 0)
+        {   // wrapped around: old stamps may look new
+            for (int i = 0; i < seen.length; i++)
+            {
+                seen[i] = 0;
+            }
+            stamp = 1;
+        }
+        int kept = 0;
+        for (int k = 0; k < nrSorted; k++)
+        {
+            GameItem item = sorted[k];
+            int i = item.slot;
+            // the item is still there if the set has it at the index it was given
+            if (i >= 0 && i < size && items.getItem(i) == item && seen[i] != stamp)
+            {
+                seen[i] = stamp;
+                sorted[kept] = item;
+                index[kept] = i;
+                kept++;
+            }
+        }
+        for (int k = kept; k < nrSorted; k++)
+        {
+            sorted[k] = null;
+        }
+        nrSorted = kept;
+        if (sorted.length < size)
+        {
+            int length = Math.max(size, 2 * sorted.length);
+            GameItem[] newSorted = new GameItem[length];
+            int[] newIndex = new int[length];
+            System.arraycopy(sorted, 0, newSorted, 0, nrSorted);
+            System.arraycopy(index, 0, newIndex, 0, nrSorted);
+            sorted = newSorted;
+            index = newIndex;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            if (seen[i] != stamp)
+            {
+                sorted[nrSorted] = items.getItem(i);
+                index[nrSorted] = i;
+                nrSorted++;
+            }
+        }
+    }
+
+    /**
+     * Insertion sort on x. Fast when the list is nearly sorted, which is
+     * normally the case.
+     *
+     * @param items the items of the game
+     */
+    private void sort(CollisionSet items)
+    {
+        for (int k = 1; k < nrSorted; k++)
+        {
+            GameItem item = sorted[k];
+            int i = index[k];
+            int x = items.getX(i);
+            int m = k - 1;
+            while (m >= 0 && items.getX(index[m]) > x)
+            {
+                sorted[m + 1] = sorted[m];
+                index[m + 1] = index[m];
+                m--;
+            }
+            sorted[m + 1] = item;
+            index[m + 1] = i;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * File: 	TileMap.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The tiles of the environment map, see GameEngine.addEnvironmentMap. The map is divided in chunks of
+ * fixed size, each chunk is a flat byte array with its tiles row by row.
+ * <br/>
+ * A map that is given as a byte[][] is kept in memory as it is: every row is a chunk, so the map
+ * of the game is used without copying it. A map from an ITileChunkSource has square chunks that are
+ * loaded when they are needed: around the viewport (see keep) and wherever the game loop looks at
+ * a tile. When more chunks are loaded than the budget allows, the chunk farthest from the viewport
+ * is dropped. A chunk in which a tile has been changed is never dropped, the change would be lost.
+ * The budget is a soft limit: the chunks around the viewport and the changed ones are kept even if
+ * there are more of them, and a dropped chunk is only freed by the garbage collector. Its array is 
+ * not used again, because a paint in another thread may still be reading it.
+ * <br/>
+ * Only the game loop may load chunks: it uses get and set. Painting uses peek, which never loads
+ * a chunk. The chunks around the viewport are kept, so painting finds them loaded.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class TileMap
+{
+    /**
+     * The tile number that means 'no tile'
+     */
+    static final byte NO_TILE = 0;
+
+    /**
+     * Size of the map in tiles
+     */
+    final int columns, rows;
+
+    /**
+     * Size of a chunk: 2^shift columns and rows, the mask gives the position in the chunk
+     */
+    private final int shiftX, shiftY, maskX, maskY;
+
+    /**
+     * Size of the map in chunks
+     */
+    private final int chunkColumns, chunkRows;
+
+    /**
+     * The chunks, row by row, null if not loaded
+     */
+    private final byte[][] chunks;
+
+    /**
+     * Where the chunks come from, null if the whole map is in memory
+     */
+    private final ITileChunkSource source;
+
+    /**
+     * true for the chunks in which a tile has been changed
+     */
+    private boolean[] changed;
+
+    /**
+     * Indices of the loaded chunks
+     */
+    private int[] loaded;
+
+    private int nrLoaded;
+
+    /**
+     * Number of chunks that may be loaded, more only when they are all near the viewport
+     */
+    private int maxLoaded;
+
+    /**
+     * The chunks that are kept: around the viewport, first and last column and row
+     */
+    private int keepLeft = 0, keepTop = 0, keepRight = -1, keepBottom = -1;
+
+    /**
+     * true if peek found a chunk that was not loaded, it must be painted again
+     */
+    private volatile boolean missed;
+
+    /**
+     * Number of chunks that have been loaded and dropped
+     */
+    private int loads, drops;
+
+    /**
+     * Constructs a map that is in memory. The rows of the array are used as chunks.
+     *
+     * @param map
+     *                the tile numbers, map[row][column]
+     */
+    TileMap(byte[][] map)
+    {
+        rows = map.length;
+        columns = map[0].length;
+        shiftX = shiftFor(columns);
+        maskX = (1 << shiftX) - 1;
+        shiftY = 0;
+        maskY = 0;
+        chunkColumns = 1;
+        chunkRows = rows;
+        chunks = map;
+        source = null;
+    }
+
+    /**
+     * Constructs a map whose chunks are loaded when they are needed
+     *
+     * @param source
+     *                the source of the chunks
+     * @param maxBytes
+     *                memory budget for the loaded chunks, in bytes
+     * @throws GameException
+     *                 if the chunk size is not a power of 2
+     */
+    TileMap(ITileChunkSource source, int maxBytes)
+    {
+        int size = source.getChunkSize();
+        shiftX = shiftFor(size);
+        if (size < 1 || (1 << shiftX) != size)
+        {
+            throw new GameException("The chunk size of a tile map must be a power of 2, not " + size);
+        }
+        shiftY = shiftX;
+        maskX = size - 1;
+        maskY = size - 1;
+        columns = source.getColumns();
+        rows = source.getRows();
+        chunkColumns = (columns + maskX) >> shiftX;
+        chunkRows = (rows + maskY) >> shiftY;
+        chunks = new byte[chunkColumns * chunkRows][];
+        changed = new boolean[chunks.length];
+        this.source = source;
+        maxLoaded = Math.max(1, maxBytes / (size * size));
+        loaded = new int[Math.min(maxLoaded, chunks.length)];
+    }
+
+    /**
+     * Find out if chunks of this map are loaded when needed
+     *
+     * @return false if the whole map is in memory
+     */
+    boolean isLazy()
+    {
+        return source != null;
+    }
+
+    /**
+     * Get a tile, the chunk is loaded when needed. To be used by the game loop only.
+     *
+     * @param column
+     *                column of the tile, inside the map
+     * @param row
+     *                row of the tile, inside the map
+     * @return the tile number
+     */
+    byte get(int column, int row)
+    {
+        int index = (row >> shiftY) * chunkColumns + (column >> shiftX);
+        byte[] chunk = chunks[index];
+        if (chunk == null)
+        {
+            chunk = load(index);
+        }
+        return chunk[((row & maskY) << shiftX) | (column & maskX)];
+    }
+
+    /**
+     * Get a tile if its chunk is loaded. Used when painting, from any thread.
+     *
+     * @param column
+     *                column of the tile, inside the map
+     * @param row
+     *                row of the tile, inside the map
+     * @return the tile number, NO_TILE if the chunk is not loaded
+     */
+    byte peek(int column, int row)
+    {
+        byte[] chunk = chunks[(row >> shiftY) * chunkColumns + (column >> shiftX)];
+        if (chunk == null)
+        {
+            missed = true;
+            return NO_TILE;
+        }
+        return chunk[((row & maskY) << shiftX) | (column & maskX)];
+    }
+
+    /**
+     * Change a tile, the chunk is loaded when needed and kept from then on. To be used by the game loop only.
+     *
+     * @param column
+     *                column of the tile, inside the map
+     * @param row
+     *                row of the tile, inside the map
+     * @param tile
+     *                the new tile number
+     */
+    void set(int column, int row, byte tile)
+    {
+        int index = (row >> shiftY) * chunkColumns + (column >> shiftX);
+        byte[] chunk = chunks[index];
+        if (chunk == null)
+        {
+            chunk = load(index);
+        }
+        chunk[((row & maskY) << shiftX) | (column & maskX)] = tile;
+        if (changed != null)
+        {
+            changed[index] = true;
+        }
+    }
+
+    /**
+     * Load the chunks that hold a rectangle of tiles, and one chunk around it, and keep them.
+     * The rectangle may lie partly or completely outside the map. To be used by the game loop only.
+     *
+     * @param left
+     *                first column of the rectangle
+     * @param top
+     *                first row of the rectangle
+     * @param right
+     *                last column of the rectangle
+     * @param bottom
+     *                last row of the rectangle
+     * @return true if painting found chunks that were not loaded since the last call: everything must be painted again
+     */
+    boolean keep(int left, int top, int right, int bottom)
+    {
+        if (source == null)
+        {
+            return false;
+        }
+        // >> rounds down, also for tiles left of or above the map
+        int l = Math.max(0, (left >> shiftX) - 1);
+        int t = Math.max(0, (top >> shiftY) - 1);
+        int r = Math.min(chunkColumns - 1, (right >> shiftX) + 1);
+        int b = Math.min(chunkRows - 1, (bottom >> shiftY) + 1);
+        if (l != keepLeft || t != keepTop || r != keepRight || b != keepBottom)
+        {
+            keepLeft = l;
+            keepTop = t;
+            keepRight = r;
+            keepBottom = b;
+            for (int cy = t; cy <= b; cy++)
+            {
+                for (int cx = l; cx <= r; cx++)
+                {
+                    if (chunks[cy * chunkColumns + cx] == null)
+                    {
+                        load(cy * chunkColumns + cx);
+                    }
+                }
+            }
+        }
+        if (missed)
+        {
+            missed = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of chunks that have been loaded
+     *
+     * @return the number of loads, 0 for a map that is in memory
+     */
+    int getLoads()
+    {
+        return loads;
+    }
+
+    /**
+     * Gets the number of chunks that have been dropped to stay within the budget
+     *
+     * @return the number of chunks
+     */
+    int getDrops()
+    {
+        return drops;
+    }
+
+    /**
+     * Load a chunk from the source, drop another one first if the budget is used up
+     *
+     * @param index
+     *                the index of the chunk
+     * @return the tiles of the chunk
+     */
+    private byte[] load(int index)
+    {
+        if (nrLoaded >= maxLoaded)
+        {
+            drop();
+        }
+        byte[] chunk = new byte[1 << (shiftX + shiftY)];
+        source.loadChunk(index % chunkColumns, index / chunkColumns, chunk);
+        if (nrLoaded == loaded.length)
+        {   // over budget, because all loaded chunks are near the viewport or changed
+            int[] bigger = new int[2 * loaded.length];
+            System.arraycopy(loaded, 0, bigger, 0, nrLoaded);
+            loaded = bigger;
+        }
+        loaded[nrLoaded++] = index;
+        chunks[index] = chunk;
+        loads++;
+        return chunk;
+    }
+
+    /**
+     * Drop the loaded chunk that is farthest from the viewport, if there is one that is not kept or changed
+     */
+    private void drop()
+    {
+        int centerX = (keepLeft + keepRight) >> 1;
+        int centerY = (keepTop + keepBottom) >> 1;
+        int farthest = -1;
+        int farthestDistance = -1;
+        for (int i = 0; i < nrLoaded; i++)
+        {
+            int index = loaded[i];
+            int cx = index % chunkColumns;
+            int cy = index / chunkColumns;
+            if (changed[index] || (cx >= keepLeft && cx <= keepRight && cy >= keepTop && cy <= keepBottom))
+            {
+                continue;
+            }
+            int distance = Math.max(Math.abs(cx - centerX), Math.abs(cy - centerY));
+            if (distance > farthestDistance)
+            {
+                farthest = i;
+                farthestDistance = distance;
+            }
+        }
+        if (farthest >= 0)
+        {
+            int index = loaded[farthest];
+            loaded[farthest] = loaded[--nrLoaded];
+            chunks[index] = null;
+            drops++;
+        }
+    }
+
+    /**
+     * Find the smallest power of 2 that is at least n
+     *
+     * @param n
+     *                the number
+     * @return the exponent of the power of 2
+     */
+    private static int shiftFor(int n)
+    {
+        int shift = 0;
+        while ((1 << shift) < n)
+        {
+            shift++;
+        }
+        return shift;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * File: 	TimerWheel.java
+ * Created: Oct 16, 2026
+ */
+package phonegame;
+
+/**
+ * The outstanding alarms of the GameEngine, in a 'hashed timer wheel'.
+ * <br/>
+ * The wheel has a fixed number of slots. An alarm is put in the slot of its end cycle (modulo the
+ * number of slots), so in every cycle only the alarms in one slot have to be checked. Alarms that are
+ * more than one round ahead just stay in their slot until their cycle comes. The alarms of a GameItem
+ * are also linked to the item, so they can all be removed at once when the item leaves the game.
+ * <br/>
+ * The rules are the same as they always were: an alarm rings in the cycle it was set for, alarms of
+ * one cycle ring in the order they were set, and an alarm for the current cycle that is set while the
+ * alarms are ringing will ring right away.
+ *
+ * @version 3.3, October 16, 2026
+ */
+final class TimerWheel
+{
+    /**
+     * An alarm
+     */
+    static final class Alarm
+    {
+        int endCycle;
+
+        int id;
+
+        IAlarmListener listener;
+
+        /**
+         * Neighbours in the slot
+         */
+        Alarm prev, next;
+
+        /**
+         * Neighbours in the list of the GameItem that listens, if it is a GameItem
+         */
+        Alarm prevOfItem, nextOfItem;
+    }
+
+    /**
+     * Number of slots, a power of two
+     */
+    private static final int NR_OF_SLOTS = 256;
+
+    private static final int SLOT_MASK = NR_OF_SLOTS - 1;
+
+    /**
+     * First and last alarm of every slot
+     */
+    private Alarm[] head = new Alarm[NR_OF_SLOTS], tail = new Alarm[NR_OF_SLOTS];
+
+    /**
+     * Alarms that can be used again
+     */
+    private Alarm free;
+
+    /**
+     * Number of alarms in the wheel
+     */
+    private int size;
+
+    /**
+     * Changes when the wheel is cleared, so an alarm that clears the wheel
+     * stops the ringing of the other alarms
+     */
+    private int generation;
+
+    /**
+     * Add an alarm
+     *
+     * @param endCycle the cycle in which the alarm must ring
+     * @param id the id of the alarm
+     * @param listener the object that gets the alarm
+     */
+    void add(int endCycle, int id, IAlarmListener listener)
+    {
+        Alarm a = free;
+        if (a != null)
+        {
+            free = a.next;
+        } else
+        {
+            a = new Alarm();
+        }
+        a.endCycle = endCycle;
+        a.id = id;
+        a.listener = listener;
+        // at the end of the slot: alarms ring in the order they were set
+        int s = endCycle & SLOT_MASK;
+        a.prev = tail[s];
+        a.next = null;
+        if (tail[s] != null)
+        {
+            tail[s].next = a;
+        } else
+        {
+            head[s] = a;
+        }
+        tail[s] = a;
+        if (listener instanceof GameItem)
+        {
+            GameItem item = (GameItem) listener;
+            a.prevOfItem = null;
+            a.nextOfItem = item.alarms;
+            if (item.alarms != null)
+            {
+                item.alarms.prevOfItem = a;
+            }
+            item.alarms = a;
+        }
+        size++;
+    }
+
+    /**
+     * Ring the alarms of the given cycle. Alarms in the slot that were set for an earlier
+     * cycle can never ring any more, they are removed.
+     *
+     * @param cycle the current cycle number
+     * @return the number of alarms that rang
+     */
+    int fire(int cycle)
+    {
+        int s = cycle & SLOT_MASK;
+        int gen = generation;
+        int fired = 0;
+        Alarm a = head[s];
+        while (a != null)
+        {
+            if (a.endCycle == cycle)
+            {   // keep the alarm in the slot while it rings, so alarms added to the slot are found
+                a.listener.alarm(a.id);
+                fired++;
+                if (gen != generation)
+                {   // the wheel has been cleared
+                    return fired;
+                }
+            }
+            Alarm next = a.next;
+            if (a.endCycle <= cycle)
+            {
+                remove(a);
+            }
+            a = next;
+        }
+        return fired;
+    }
+
+    /**
+     * Remove all alarms of a GameItem
+     *
+     * @param item the item
+     */
+    void cancel(GameItem item)
+    {
+        while (item.alarms != null)
+        {
+            remove(item.alarms);
+        }
+    }
+
+    /**
+     * Remove all alarms
+     */
+    void clear()
+    {
+        for (int s = 0; s < NR_OF_SLOTS; s++)
+        {
+            while (head[s] != null)
+            {
+                remove(head[s]);
+            }
+        }
+        generation++;
+    }
+
+    /**
+     * Gets the number of outstanding alarms
+     *
+     * @return the number of alarms
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Take an alarm out of its slot and out of the list of its item, and keep it for later use.
+     *
+     * @param a the alarm
+     */
+    private void remove(Alarm a)
+    {
+        int s = a.endCycle & SLOT_MASK;
+        if (a.prev != null)
+        {
+            a.prev.next = a.next;
+        } else
+        {
+            head[s] = a.next;
+        }
+        if (a.next != null)
+        {
+            a.next.prev = a.prev;
+        } else
+        {
+            tail[s] = a.prev;
+        }
+        if (a.listener instanceof GameItem)
+        {
+            if (a.prevOfItem != null)
+            {
+                a.prevOfItem.nextOfItem = a.nextOfItem;
+            } else
+            {
+                ((GameItem) a.listener).alarms = a.nextOfItem;
+            }
+            if (a.nextOfItem != null)
+            {
+                a.nextOfItem.prevOfItem = a.prevOfItem;
+            }
+        }
+        a.listener = null;
+        a.prev = null;
+        a.prevOfItem = null;
+        a.nextOfItem = null;
+        a.next = free;
+        free = a;
+        size--;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * File: 	FastMath.java
+ * Created: Oct 16, 2026
+ */
+package phonegame.utils;
+
+/**
+ * Fast trigonometry for moving items: sine and cosine from tables, an atan2 and an inverse length
+ * with integers only. Phones without floating point hardware compute Math.sin and Math.sqrt in
+ * software, which makes them far too slow to steer a swarm of items in every cycle.
+ * <br/>
+ * Fixed-point numbers are ints: the value times 2^30 for sine, cosine and inverse length
+ * (UNIT_ONE means 1), the value times 65536 for angles in degrees (DEGREE means 1 degree).
+ * <br/>
+ * The tables are made once, when the class is first used.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public final class FastMath
+{
+    /**
+     * The number 1 as a 2.30 fixed-point number
+     */
+    public static final int UNIT_ONE = 1 << 30;
+
+    /**
+     * One degree as a 16.16 fixed-point number
+     */
+    public static final int DEGREE = 1 << 16;
+
+    /**
+     * Sine of every whole degree, as double and as 2.30 fixed-point number
+     */
+    private static final double[] SIN = new double[360];
+
+    private static final int[] SIN_FIXED = new int[360];
+
+    /**
+     * Number of steps in the arctangent table, between 0 and 1
+     */
+    private static final int ATAN_STEPS = 256;
+
+    /**
+     * Arctangent of i/ATAN_STEPS in degrees, as 16.16 fixed-point number
+     */
+    private static final int[] ATAN = new int[ATAN_STEPS + 2];
+
+    /**
+     * Start values for the inverse square root of m/64, for m from 16 to 63, as 2.30 fixed-point number
+     */
+    private static final long[] INV_SQRT = new long[64];
+
+    static
+    {
+        for (int d = 0; d < 360; d++)
+        {   // the same values as Math.sin(Math.toRadians(d)) always gave
+            SIN[d] = Math.sin(Math.toRadians(d));
+            SIN_FIXED[d] = toFixed(SIN[d]);
+        }
+        for (int i = 0; i <= ATAN_STEPS; i++)
+        {
+            ATAN[i] = (int) (Math.toDegrees(atan((double) i / ATAN_STEPS)) * DEGREE + 0.5);
+        }
+        ATAN[ATAN_STEPS + 1] = ATAN[ATAN_STEPS];
+        for (int m = 16; m < 64; m++)
+        {   // middle of the interval [m/64, (m+1)/64)
+            INV_SQRT[m] = (long) (UNIT_ONE / Math.sqrt((m + 0.5) / 64));
+        }
+    }
+
+    /**
+     * Constructs an instance of this class
+     */
+    private FastMath()
+    {
+        // do nothing
+    }
+
+    /**
+     * Get the sine of an angle in whole degrees, from the table
+     *
+     * @param degrees
+     *                the angle, any value (370 degrees = 10 degrees)
+     * @return the sine
+     */
+    public static double sin(int degrees)
+    {
+        return SIN[index(degrees)];
+    }
+
+    /**
+     * Get the cosine of an angle in whole degrees, from the table
+     *
+     * @param degrees
+     *                the angle, any value (370 degrees = 10 degrees)
+     * @return the cosine
+     */
+    public static double cos(int degrees)
+    {
+        return SIN[index(degrees + 90)];
+    }
+
+    /**
+     * Get the sine of an angle in whole degrees, from the table
+     *
+     * @param degrees
+     *                the angle, any value (370 degrees = 10 degrees)
+     * @return the sine as 2.30 fixed-point number
+     */
+    public static int sinFixed(int degrees)
+    {
+        return SIN_FIXED[index(degrees)];
+    }
+
+    /**
+     * Get the cosine of an angle in whole degrees, from the table
+     *
+     * @param degrees
+     *                the angle, any value (370 degrees = 10 degrees)
+     * @return the cosine as 2.30 fixed-point number
+     */
+    public static int cosFixed(int degrees)
+    {
+        return SIN_FIXED[index(degrees + 90)];
+    }
+
+    /**
+     * Get the angle of the vector (x, y), with integers only. Degrees run counterclockwise,
+     * from 0 (to the right), so y must be positive upwards. The result is precise to
+     * 1/100 of a degree.
+     *
+     * @param y
+     *                vertical part of the vector, positive is up
+     * @param x
+     *                horizontal part of the vector, positive is right
+     * @return the angle in degrees as 16.16 fixed-point number, between 0 and 360 degrees
+     *                (not including 360), 0 if x and y are 0
+     */
+    public static int atan2(int y, int x)
+    {
+        int ax = Math.abs(x);
+        int ay = Math.abs(y);
+        // make the numbers small enough to shift the smaller one 16 bits
+        while (ax >= (1 << 15) || ay >= (1 << 15))
+        {
+            ax >>= 1;
+            ay >>= 1;
+        }
+        if (ax == 0 && ay == 0)
+            return 0;
+        // angle in the first octant, between 0 and 45 degrees
+        int a;
+        if (ay <= ax)
+        {
+            a = atanTable((ay << 16) / ax);
+        } else
+        {
+            a = 90 * DEGREE - atanTable((ax << 16) / ay);
+        }
+        if (x < 0)
+        {
+            a = 180 * DEGREE - a;
+        }
+        if (y < 0)
+        {
+            a = 360 * DEGREE - a;
+        }
+        return a == 360 * DEGREE ? 0 : a;
+    }
+
+    /**
+     * Get 1 divided by the length of the vector (dx, dy), with integers only. Multiply a part
+     * of the vector by this number to get the sine or cosine of its direction as 2.30 fixed-point
+     * number: dx * invLength(dx, dy) is the cosine.
+     *
+     * @param dx
+     *                horizontal part of the vector, between -32767 and 32767
+     * @param dy
+     *                vertical part of the vector, between -32767 and 32767
+     * @return 1/sqrt(dx*dx + dy*dy) as 2.30 fixed-point number, 0 if dx and dy are 0
+     */
+    public static int invLength(int dx, int dy)
+    {
+        int s = dx * dx + dy * dy;
+        if (s == 0)
+            return 0;
+        // s = m * 4^shift, with m between 2^28 and 2^30: m is the fraction m/2^30 between 1/4 and 1
+        int shift = 0;
+        while (s >= (1 << 30))
+        {
+            s >>= 2;
+            shift++;
+        }
+        while (s < (1 << 28))
+        {
+            s <<= 2;
+            shift--;
+        }
+        long m = s;
+        // start value from the table, then Newton: y = y * (3 - m*y*y) / 2
+        long y = INV_SQRT[s >> 24];
+        for (int i = 0; i < 3; i++)
+        {
+            long myy = (((m * y) >> 30) * y) >> 30;
+            y = (y * (3L * UNIT_ONE - myy)) >> 31;
+        }
+        // 1/sqrt(s) = y / 2^30 / 2^15 / 2^shift
+        return (int) (y >> (15 + shift));
+    }
+
+    /**
+     * Look up an arctangent, between two entries of the table the value is interpolated.
+     *
+     * @param t
+     *                the tangent as 16.16 fixed-point number, between 0 and 1
+     * @return the angle in degrees as 16.16 fixed-point number
+     */
+    private static int atanTable(int t)
+    {
+        int i = t >> 8;
+        int f = t & 0xff;
+        return ATAN[i] + (((ATAN[i + 1] - ATAN[i]) * f) >> 8);
+    }
+
+    /**
+     * Get the index in the sine table of an angle
+     *
+     * @param degrees
+     *                the angle
+     * @return the angle between 0 and 359
+     */
+    private static int index(int degrees)
+    {
+        int d = degrees % 360;
+        return d < 0 ? d + 360 : d;
+    }
+
+    /**
+     * Calculate the arctangent of x between 0 and 1, to make the table. CLDC has no Math.atan.
+     * The angle is halved first, atan(x) = 2*atan(x / (1 + sqrt(1+x*x))), so the Taylor series
+     * converges quickly.
+     *
+     * @param x
+     *                the tangent
+     * @return the angle in radians
+     */
+    private static double atan(double x)
+    {
+        double h = x / (1 + Math.sqrt(1 + x * x));
+        double res = 0;
+        double term = h;
+        for (int n = 0; n < 20; n++)
+        {
+            res += term / (2 * n + 1);
+            term = -term * h * h;
+        }
+        return 2 * res;
+    }
+
+    /**
+     * Convert a double between -1 and 1 to a 2.30 fixed-point number
+     *
+     * @param d
+     *                the double
+     * @return the nearest fixed-point number
+     */
+    private static int toFixed(double d)
+    {
+        return (int) (d < 0 ? d * UNIT_ONE - 0.5 : d * UNIT_ONE + 0.5);
+    }
+}
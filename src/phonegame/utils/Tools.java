@@ -83,6 +83,18 @@ public final class Tools
         return (random.nextInt() << 1 >>> 1) % range;
     }
 
+    /**
+     * Restart the random generator with the given seed. After this, random(range) will
+     * give the same numbers every time, which is used to replay a game.
+     * 
+     * @param seed
+     *                the seed
+     */
+    public static final void setRandomSeed(long seed)
+    {
+        random.setSeed(seed);
+    }
+
     /**
      * Returns a random number between 0 and 100
      * 
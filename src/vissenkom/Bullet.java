@@ -20,21 +20,26 @@ public class Bullet extends MoveableGameItem
 	private Vissenkom mygame;
 	
 	/**
-	 * Maak een Bullet op de opgegeven plaats, met kennis van het spel zelf ivm verwijderen
+	 * Maak een Bullet, met kennis van het spel zelf ivm verwijderen. 
+	 * Kogels worden hergebruikt: het spel maakt ze via een pool, zie Vissenkom.
 	 * 
-	 * @param x De x-positie van de kogel
-	 * @param y De y-positie van de kogel
 	 * @param vg referentie naar het spel
 	 */
-	public Bullet(int x, int y, Vissenkom vg)
+	public Bullet(Vissenkom vg)
 	{ 	mygame = vg;
 		setImage("/images/fire_bullet1.png", 9, 20);
-	    // plaatsen op de opgegeven positie
-	    setPosition(x, y);
-	    // snelheid 4, naar rechts
+		reset();
+	}   
+
+	/**
+	 * Zet de kogel weer in de begintoestand, voor een nieuw schot
+	 */
+	public void reset()
+	{	// snelheid 4, naar rechts
 	    setDirectionSpeed(0, 4);
+	    setFrame(0);
 	    startMoving();
-	}   
+	}
 	
 	/**
 	 * De kogel verwijdert zichzelf als ie buiten de wereld geraakt.
@@ -58,6 +58,6 @@ public class Controler
 	    // aardbei plaatsen
 	    mygame.addGameItem(s);
 	    // timer voor volgende aardbei
-	    mygame.setTimer(Tools.random(50), 1, this);
+	    mygame.setTimer(mygame.getRandom().nextInt(50), 1, this);
 	}
 }
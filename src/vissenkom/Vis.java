@@ -79,10 +79,10 @@ public class Vis extends GamePlayer
      * De select-button: schieten!
      */
     public void fire()
-    { 	// maak nieuwe kogel, 36 pixels naar rechts vanaf eigen positie van de Vis
-        Bullet b = new Bullet(getX() + 36, getY(), mygame);
-        // plaats kogel in spel
-        mygame.addGameItem(b);
+    { 	// haal een kogel uit de pool (die staat dan ook al in het spel)
+        Bullet b = (Bullet) mygame.acquireGameItem(Bullet.class);
+        // 36 pixels naar rechts vanaf eigen positie van de Vis
+        b.setPosition(getX() + 36, getY());
     }
 
     /**
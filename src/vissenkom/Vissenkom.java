@@ -34,6 +34,20 @@ public class Vissenkom extends GameEngine implements IMenuListener {
         setBounds(0, 0, 600, 600);
         // mooi blauwgroen.... uhhh.
         setBackgroundColor(34, 204, 255);
+        // botsingen zoeken met sweep-and-prune: de items blijven op x gesorteerd, 
+        // alleen items die horizontaal overlappen worden getest
+        setCollisionBroadphase(new SweepAndPruneBroadphase());
+        // kogels hergebruiken: een verwijderde kogel gaat in de pool en wordt 
+        // bij het volgende schot weer gebruikt, dat scheelt objecten en plaatjes laden
+        registerItemPool(Bullet.class, new IItemFactory() {
+            public GameItem createItem() {
+                return new Bullet(Vissenkom.this);
+            }
+
+            public void resetItem(GameItem item) {
+                ((Bullet) item).reset();
+            }
+        }, 10);
 
         // Dashboard maken en plaatsen
         db = new GameDashboard();
@@ -110,39 +124,10 @@ public class Vissenkom extends GameEngine implements IMenuListener {
 
     /**
      * bouw achtergrond van wereld (tiles) op.
+     * De tiles en de map staan in /levels/vissenkom.lvl, gemaakt met tools/LevelConverter
+     * uit tools/levels/vissenkom.level en vissenkom.csv.
      */
-    private void buildEnvironment() {   // get path to tile images
-        String[] imagePaths = {"/images/tile1.png",
-            "/images/tile2.png",};
-        // create map
-        byte[][] map = {
-            {2, 2, 2, 2, 2, 2, 0, 0, 0, 0, 0, 1, 2, 1, 2, 1, 1},
-            {2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
-            {2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
-            {2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
-            {2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
-            {2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
-            {0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-            {0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-            {0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-            {0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-            {1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 0, 0, 0, 0, 0, 0, 0},
-            {1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0},
-            {1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0},
-            {1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0},
-            {1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-            {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-            {1, 2, 1, 2, 1, 2, 1, 2, 0, 0, 0, 0, 0, 0, 0, 1, 2}
-        };
-
-        // add map
-        this.setTileImages(imagePaths, 10, 10);
-        this.addEnvironmentMap(map, 200, 200);
+    private void buildEnvironment() {   // plaatjes van de tiles en de map laden
+        this.loadLevel("/levels/vissenkom.lvl", null);
     }
 }
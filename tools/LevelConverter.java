@@ -0,0 +1,389 @@
+/*
+ * File: 	LevelConverter.java
+ * Created: Oct 16, 2026
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+
+/**
+ * Makes the level files of the GameAPI on the PC, to be put in the jar of the game. This tool is not
+ * part of the game itself, run it with a normal Java:
+ * <pre>
+ * java LevelConverter level1.level level1.lvl
+ * java LevelConverter -chunks 16 world.csv world.ptm
+ * </pre>
+ * The first makes a level for GameEngine.loadLevel from a description like this:
+ * <pre>
+ * # tile width and height, and the tile images: the first is tile 1, the second tile 2, ...
+ * tiles 10 10 /images/tile1.png /images/tile2.png
+ * # position of the map in the world
+ * map 200 200
+ * # the tiles, one or more layers; in the layers after the first, 0 leaves the tile below
+ * layer walls.csv
+ * # items: type, x, y and an optional number for the game
+ * item Monster 100 40 3
+ * </pre>
+ * The second makes a packed tile map for PackedTileSource, for worlds that are too big to keep in memory.
+ * <br/>
+ * A CSV file has a row of tile numbers on every line, separated by commas or spaces. The rows of
+ * a byte[][] written in Java can be used as they are: what is between { and } is read, the rest
+ * of the line is skipped. Lines starting with # or // are skipped too. File names in a description
+ * are relative to the description.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class LevelConverter
+{
+    /**
+     * Magic numbers of a level and a packed tile map, see LevelLoader and PackedTileSource
+     */
+    private static final int LEVEL_MAGIC = 0x504C5631;
+
+    private static final int PACKED_MAGIC = 0x50544D31;
+
+    /**
+     * Longest run of equal tiles
+     */
+    private static final int MAX_RUN = 256;
+
+    /**
+     * Convert the files given on the command line
+     *
+     * @param args
+     *                the description and the level, or -chunks, the chunk size, the CSV file and the packed tile map
+     */
+    public static void main(String[] args)
+    {
+        try
+        {
+            if (args.length == 4 && args[0].equals("-chunks"))
+            {
+                writePacked(readCsv(new File(args[2])), Integer.parseInt(args[1]), new File(args[3]));
+            } else if (args.length == 2)
+            {
+                writeLevel(new File(args[0]), new File(args[1]));
+            } else
+            {
+                System.out.println("usage: java LevelConverter <description> <level>");
+                System.out.println("       java LevelConverter -chunks <chunk size> <csv file> <packed tile map>");
+                System.exit(2);
+            }
+        } catch (IOException e)
+        {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        } catch (NumberFormatException e)
+        {
+            System.out.println("not a number: " + e.getMessage());
+            System.exit(1);
+        } catch (NoSuchElementException e)
+        {
+            System.out.println("a line of the description is too short");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read a level description and write the level
+     *
+     * @param description
+     *                the description
+     * @param level
+     *                the level file to write
+     * @throws IOException
+     *                 if a file can't be read or written, or the description is wrong
+     */
+    private static void writeLevel(File description, File level) throws IOException
+    {
+        int tileWidth = 0;
+        int tileHeight = 0;
+        List<String> images = new ArrayList<String>();
+        int mapX = 0;
+        int mapY = 0;
+        List<byte[][]> layers = new ArrayList<byte[][]>();
+        List<String> types = new ArrayList<String>();
+        List<int[]> items = new ArrayList<int[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(description));
+        try
+        {
+            String line;
+            int lineNr = 0;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNr++;
+                StringTokenizer words = new StringTokenizer(line);
+                if (!words.hasMoreTokens() || line.trim().startsWith("#"))
+                {
+                    continue;
+                }
+                String keyword = words.nextToken();
+                if (keyword.equals("tiles"))
+                {
+                    tileWidth = Integer.parseInt(words.nextToken());
+                    tileHeight = Integer.parseInt(words.nextToken());
+                    while (words.hasMoreTokens())
+                    {
+                        images.add(words.nextToken());
+                    }
+                } else if (keyword.equals("map"))
+                {
+                    mapX = Integer.parseInt(words.nextToken());
+                    mapY = Integer.parseInt(words.nextToken());
+                } else if (keyword.equals("layer"))
+                {
+                    File csv = new File(words.nextToken());
+                    if (!csv.isAbsolute())
+                    {
+                        csv = new File(description.getParentFile(), csv.getPath());
+                    }
+                    byte[][] layer = readCsv(csv);
+                    if (layers.size() > 0)
+                    {
+                        byte[][] first = layers.get(0);
+                        if (layer.length != first.length || layer[0].length != first[0].length)
+                        {
+                            throw new IOException(description + ", line " + lineNr + ": the layer has another size than the first");
+                        }
+                    }
+                    layers.add(layer);
+                } else if (keyword.equals("item"))
+                {
+                    String type = words.nextToken();
+                    if (!types.contains(type))
+                    {
+                        types.add(type);
+                    }
+                    int x = Integer.parseInt(words.nextToken());
+                    int y = Integer.parseInt(words.nextToken());
+                    int parameter = words.hasMoreTokens() ? Integer.parseInt(words.nextToken()) : 0;
+                    items.add(new int[] { types.indexOf(type), x, y, parameter });
+                } else
+                {
+                    throw new IOException(description + ", line " + lineNr + ": unknown keyword " + keyword);
+                }
+            }
+        } finally
+        {
+            reader.close();
+        }
+        if (images.size() > 255 || types.size() > 255 || layers.size() > 255 || items.size() > 65535)
+        {
+            throw new IOException(description + ": too many images, layers, types or items");
+        }
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(level));
+        try
+        {
+            out.writeInt(LEVEL_MAGIC);
+            out.writeShort(tileWidth);
+            out.writeShort(tileHeight);
+            out.writeByte(images.size());
+            for (int i = 0; i < images.size(); i++)
+            {
+                out.writeUTF(images.get(i));
+            }
+            byte[][] first = layers.size() > 0 ? layers.get(0) : new byte[0][0];
+            out.writeShort(first.length > 0 ? first[0].length : 0);
+            out.writeShort(first.length);
+            out.writeInt(mapX);
+            out.writeInt(mapY);
+            out.writeByte(layers.size());
+            for (int i = 0; i < layers.size(); i++)
+            {
+                byte[][] layer = layers.get(i);
+                byte[] tiles = new byte[layer.length * layer[0].length];
+                for (int row = 0; row < layer.length; row++)
+                {
+                    System.arraycopy(layer[row], 0, tiles, row * layer[0].length, layer[0].length);
+                }
+                writeRuns(out, tiles);
+            }
+            out.writeByte(types.size());
+            for (int i = 0; i < types.size(); i++)
+            {
+                out.writeUTF(types.get(i));
+            }
+            out.writeShort(items.size());
+            for (int i = 0; i < items.size(); i++)
+            {
+                int[] item = items.get(i);
+                out.writeByte(item[0]);
+                out.writeInt(item[1]);
+                out.writeInt(item[2]);
+                out.writeInt(item[3]);
+            }
+        } finally
+        {
+            out.close();
+        }
+        System.out.println(level + ": " + level.length() + " bytes");
+    }
+
+    /**
+     * Write a packed tile map
+     *
+     * @param map
+     *                the tiles, map[row][column]
+     * @param chunkSize
+     *                the size of the chunks, a power of 2
+     * @param file
+     *                the file to write
+     * @throws IOException
+     *                 if the file can't be written, or the chunk size is wrong
+     */
+    private static void writePacked(byte[][] map, int chunkSize, File file) throws IOException
+    {
+        if (chunkSize < 1 || (chunkSize & (chunkSize - 1)) != 0 || chunkSize > 256)
+        {
+            throw new IOException("the chunk size must be a power of 2, up to 256");
+        }
+        int rows = map.length;
+        int columns = map[0].length;
+        int chunkColumns = (columns + chunkSize - 1) / chunkSize;
+        int chunkRows = (rows + chunkSize - 1) / chunkSize;
+        int[] offsets = new int[chunkColumns * chunkRows];
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(data);
+        byte[] tiles = new byte[chunkSize * chunkSize];
+        for (int chunk = 0; chunk < offsets.length; chunk++)
+        {
+            int firstColumn = (chunk % chunkColumns) * chunkSize;
+            int firstRow = (chunk / chunkColumns) * chunkSize;
+            boolean empty = true;
+            for (int i = 0; i < tiles.length; i++)
+            {
+                int column = firstColumn + i % chunkSize;
+                int row = firstRow + i / chunkSize;
+                tiles[i] = (column < columns && row < rows) ? map[row][column] : 0;
+                empty = empty && tiles[i] == 0;
+            }
+            if (empty)
+            {
+                offsets[chunk] = -1;
+            } else
+            {
+                offsets[chunk] = dataOut.size();
+                writeRuns(dataOut, tiles);
+            }
+        }
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try
+        {
+            out.writeInt(PACKED_MAGIC);
+            out.writeShort(columns);
+            out.writeShort(rows);
+            out.writeShort(chunkSize);
+            for (int i = 0; i < offsets.length; i++)
+            {
+                out.writeInt(offsets[i]);
+            }
+            data.writeTo(out);
+        } finally
+        {
+            out.close();
+        }
+        System.out.println(file + ": " + file.length() + " bytes");
+    }
+
+    /**
+     * Write tiles as runs: an unsigned byte with the length of the run minus 1, followed by the tile number
+     *
+     * @param out
+     *                the stream
+     * @param tiles
+     *                the tiles
+     * @throws IOException
+     *                 if the stream can't be written
+     */
+    private static void writeRuns(DataOutputStream out, byte[] tiles) throws IOException
+    {
+        int i = 0;
+        while (i < tiles.length)
+        {
+            int end = i + 1;
+            while (end < tiles.length && end - i < MAX_RUN && tiles[end] == tiles[i])
+            {
+                end++;
+            }
+            out.writeByte(end - i - 1);
+            out.writeByte(tiles[i]);
+            i = end;
+        }
+    }
+
+    /**
+     * Read the tiles of a CSV file, or of the rows of a byte[][] in Java
+     *
+     * @param file
+     *                the file
+     * @return the tiles, map[row][column]
+     * @throws IOException
+     *                 if the file can't be read, is empty, has rows of different length or wrong numbers
+     */
+    private static byte[][] readCsv(File file) throws IOException
+    {
+        List<byte[]> rows = new ArrayList<byte[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            int lineNr = 0;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNr++;
+                String text = line.trim();
+                if (text.startsWith("#") || text.startsWith("//"))
+                {
+                    continue;
+                }
+                if (text.indexOf('{') >= 0)
+                {   // a row in Java: {1, 2, 0},
+                    text = text.substring(text.lastIndexOf('{') + 1);
+                }
+                if (text.indexOf('}') >= 0)
+                {
+                    text = text.substring(0, text.indexOf('}'));
+                }
+                StringTokenizer numbers = new StringTokenizer(text, ", \t;");
+                if (!numbers.hasMoreTokens())
+                {
+                    continue;
+                }
+                byte[] row = new byte[numbers.countTokens()];
+                for (int i = 0; i < row.length; i++)
+                {
+                    int tile = Integer.parseInt(numbers.nextToken());
+                    if (tile < 0 || tile > Byte.MAX_VALUE)
+                    {
+                        throw new IOException(file + ", line " + lineNr + ": tile " + tile + " is not between 0 and " + Byte.MAX_VALUE);
+                    }
+                    row[i] = (byte) tile;
+                }
+                if (rows.size() > 0 && row.length != rows.get(0).length)
+                {
+                    throw new IOException(file + ", line " + lineNr + ": the row has another length than the first");
+                }
+                rows.add(row);
+            }
+        } finally
+        {
+            reader.close();
+        }
+        if (rows.size() == 0)
+        {
+            throw new IOException(file + ": no tiles");
+        }
+        byte[][] map = new byte[rows.size()][];
+        rows.toArray(map);
+        return map;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * File: 	Ball.java
+ * Created: Oct 16, 2026
+ */
+package steadygame;
+
+import phonegame.*;
+
+/**
+ * A ball bounces against the walls and knocks away the blocks it hits. After a number of
+ * bounces it leaves the game. Balls are recycled, see SteadyGame.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class Ball extends MoveableGameItem
+{
+    /**
+     * Number of bounces before the ball leaves the game
+     */
+    private static final int MAX_BOUNCES = 6;
+
+    private SteadyGame game;
+
+    private int bounces;
+
+    /**
+     * Constructs a ball
+     *
+     * @param game the game
+     */
+    public Ball(SteadyGame game)
+    {
+        this.game = game;
+        setImage("/images/fishframes.png", 36, 22);
+        setCollisionDetection(true);
+        reset();
+    }
+
+    /**
+     * Make the ball new again, for the next time it is used
+     */
+    public void reset()
+    {
+        bounces = 0;
+        setFrame(0);
+        // standing still until the game gives it a direction and speed
+        setSpeed(0);
+    }
+
+    /**
+     * Knock away a block
+     *
+     * @see phonegame.MoveableGameItem#collisionOccured(phonegame.GameItem)
+     */
+    public void collisionOccured(GameItem collidedItem)
+    {
+        if (collidedItem instanceof Block)
+        {
+            game.deleteGameItem(collidedItem);
+        }
+    }
+
+    /**
+     * Bounce against a wall
+     *
+     * @see phonegame.MoveableGameItem#collisionOccured(int, boolean, int)
+     */
+    public void collisionOccured(int tilePattern, boolean horizontal, int position)
+    {
+        bounce(horizontal, position);
+        bounces++;
+        if (bounces == MAX_BOUNCES)
+        {
+            game.deleteGameItem(this);
+        }
+    }
+
+    /**
+     * A ball that gets through a wall leaves the game
+     *
+     * @see phonegame.MoveableGameItem#outsideWorld()
+     */
+    public void outsideWorld()
+    {
+        game.deleteGameItem(this);
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * File: 	Block.java
+ * Created: Oct 16, 2026
+ */
+package steadygame;
+
+import phonegame.*;
+
+/**
+ * A block stands still, animated, until a ball knocks it away. Blocks are recycled, see SteadyGame.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class Block extends GameItem
+{
+    /**
+     * Constructs a block
+     */
+    public Block()
+    {
+        setImage("/images/strawberryframes.png", 15, 17);
+    }
+}
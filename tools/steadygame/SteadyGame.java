@@ -0,0 +1,225 @@
+/*
+ * File: 	SteadyGame.java
+ * Created: Oct 16, 2026
+ */
+package steadygame;
+
+import java.util.Vector;
+
+import phonegame.*;
+
+/**
+ * A game that keeps doing the same things, without creating objects once it runs. It is the test
+ * game of the allocation check of the HeadlessRunner. It is not part of the GameAPI: compile it 
+ * with the classes of the GameAPI and the MIDP classes on the class path, and run it with the 
+ * images of res:
+ * <pre>
+ *     java -XX:-UseTLAB -Xint phonegame.HeadlessRunner steadygame.SteadyGame 4000 -alloc
+ * </pre>
+ * Balls bounce through a walled world and knock away blocks; both come from a pool. The player
+ * moves by itself and the viewport follows it over the tile cache. There are timers, a tile that
+ * moves, a dashboard and a findItemAt in every cycle. Every level ends with deleteAllGameItems,
+ * and switches between painting everything and painting only the changes. The first levels
+ * create the objects, after that everything is recycled.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class SteadyGame extends GameEngine implements IAlarmListener, IStepListener
+{
+    /**
+     * Size of the world and of the tiles
+     */
+    private static final int WORLD_WIDTH = 400, WORLD_HEIGHT = 400, TILE_SIZE = 10;
+
+    /**
+     * Identifiers of the timers
+     */
+    private static final int SPAWN = 1, END_LEVEL = 2, START_LEVEL = 3;
+
+    /**
+     * Cycles between two balls, and the length of a level
+     */
+    private static final int SPAWN_TIME = 3, LEVEL_TIME = 300;
+
+    /**
+     * Maximum number of balls, and the number of blocks in a level. The first level reaches these
+     * numbers, so after that the lists of the engine are big enough.
+     */
+    private static final int MAX_BALLS = 20, NR_OF_BLOCKS = 8;
+
+    /**
+     * Row of the tile that moves
+     */
+    private static final int MOVING_TILE_ROW = 20;
+
+    private Walker player;
+
+    private GameDashboard dashboard;
+
+    /**
+     * The balls in the game, filled again before a new ball is added
+     */
+    private Vector balls = new Vector(2 * MAX_BALLS);
+
+    /**
+     * Column of the tile that moves
+     */
+    private int tileColumn = 1;
+
+    /**
+     * Number of cycles in which findItemAt found an item
+     */
+    private int found;
+
+    /**
+     * Constructs the game: world, tiles, pools and dashboard, and the first level
+     */
+    public SteadyGame()
+    {
+        super();
+        setBounds(0, 0, WORLD_WIDTH, WORLD_HEIGHT);
+        setBackgroundColor(0, 0, 96);
+        setTileImages(new String[] { "/images/tile1.png", "/images/tile2.png" }, TILE_SIZE, TILE_SIZE);
+        addEnvironmentMap(buildMap(), 0, 0);
+        setTileCache(true);
+        // every ball and block is recycled: room for all of them in the pools
+        registerItemPool(Ball.class, new IItemFactory() {
+            public GameItem createItem()
+            {
+                return new Ball(SteadyGame.this);
+            }
+
+            public void resetItem(GameItem item)
+            {
+                ((Ball) item).reset();
+            }
+        }, 2 * MAX_BALLS);
+        registerItemPool(Block.class, new IItemFactory() {
+            public GameItem createItem()
+            {
+                return new Block();
+            }
+
+            public void resetItem(GameItem item)
+            {
+            }
+        }, NR_OF_BLOCKS);
+        // setItemValue makes a new text: the value stays the same, the dashboard is only drawn again
+        dashboard = new GameDashboard();
+        dashboard.setForegroundColor(255, 255, 255);
+        dashboard.setBackgroundColor(128, 0, 0);
+        dashboard.setSize(100, 16);
+        dashboard.addItem("Steady", "yes");
+        addGameDashboard(dashboard);
+        player = new Walker();
+        setPlayerPositionOnScreen(PLAYER_HCENTER | PLAYER_VCENTER);
+        addStepListener(this);
+        setTimer(SPAWN_TIME, SPAWN, this);
+        startLevel();
+        setupGame();
+    }
+
+    /**
+     * Walls around the world, and a few blocks of the second tile inside
+     *
+     * @return the map
+     */
+    private static byte[][] buildMap()
+    {
+        int columns = WORLD_WIDTH / TILE_SIZE;
+        int rows = WORLD_HEIGHT / TILE_SIZE;
+        byte[][] map = new byte[rows][columns];
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                if (r == 0 || c == 0 || r == rows - 1 || c == columns - 1)
+                {
+                    map[r][c] = 1;
+                } else if (r % 10 == 5 && c % 10 < 3)
+                {
+                    map[r][c] = 2;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Put the player and the blocks of a new level in the world, and set the timer for its end
+     */
+    private void startLevel()
+    {
+        player.reset(WORLD_WIDTH / 2, WORLD_HEIGHT / 2);
+        addPlayer(player);
+        for (int i = 0; i < NR_OF_BLOCKS; i++)
+        {
+            GameItem block = acquireGameItem(Block.class);
+            placeFree(block);
+        }
+        setTimer(LEVEL_TIME, END_LEVEL, this);
+    }
+
+    /**
+     * Put an item on a random position, where there are no tiles
+     *
+     * @param item the item
+     */
+    private void placeFree(GameItem item)
+    {
+        int x, y;
+        do
+        {
+            x = getRandomX(item.getFrameWidth());
+            y = getRandomY(item.getFrameHeight());
+        } while (findTilesAt(x, y, item.getFrameWidth(), item.getFrameHeight()) != 0);
+        item.setPosition(x, y);
+    }
+
+    /**
+     * New balls, the end of a level and the start of the next one
+     *
+     * @see phonegame.IAlarmListener#alarm(int)
+     */
+    public void alarm(int id)
+    {
+        if (id == SPAWN)
+        {
+            if (getItemsOfType(Ball.class, balls) < MAX_BALLS)
+            {
+                Ball ball = (Ball) acquireGameItem(Ball.class);
+                placeFree(ball);
+                ball.setDirectionSpeed(getRandom().nextInt(360), 3);
+            }
+            setTimer(SPAWN_TIME, SPAWN, this);
+        } else if (id == END_LEVEL)
+        {
+            deleteAllGameItems();
+            setDirtyRectangles(!isDirtyRectangles());
+            dashboard.invalidate();
+            setTimer(1, START_LEVEL, this);
+        } else if (id == START_LEVEL)
+        {
+            startLevel();
+        }
+    }
+
+    /**
+     * Move a tile and look for items in the middle of the world
+     *
+     * @see phonegame.IStepListener#stepAction(int)
+     */
+    public void stepAction(int stepnr)
+    {
+        if (stepnr % 16 == 0)
+        {
+            changeTile(tileColumn, MOVING_TILE_ROW, (byte) 0);
+            tileColumn = tileColumn % (WORLD_WIDTH / TILE_SIZE - 2) + 1;
+            changeTile(tileColumn, MOVING_TILE_ROW, (byte) 2);
+        }
+        if (findItemAt(WORLD_WIDTH / 2 - 50, WORLD_HEIGHT / 2 - 50, 100, 100) != null)
+        {
+            found++;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * File: 	Walker.java
+ * Created: Oct 16, 2026
+ */
+package steadygame;
+
+import phonegame.*;
+
+/**
+ * The player of the SteadyGame walks by itself and bounces against the walls. The keys do nothing,
+ * so the game is the same with and without a bot.
+ *
+ * @version 3.3, October 16, 2026
+ */
+public class Walker extends GamePlayer
+{
+    /**
+     * Constructs the player
+     */
+    public Walker()
+    {
+        setImage("/images/alien.png", 20, 31);
+    }
+
+    /**
+     * Put the player at the start of a level
+     *
+     * @param x x of the start position
+     * @param y y of the start position
+     */
+    public void reset(int x, int y)
+    {
+        setPosition(x, y);
+        setDirectionSpeed(60, 2);
+    }
+
+    /**
+     * Don't animate
+     *
+     * @see phonegame.GameItem#animate()
+     */
+    protected void animate()
+    {
+    }
+
+    /**
+     * Bounce against a wall
+     *
+     * @see phonegame.MoveableGameItem#collisionOccured(int, boolean, int)
+     */
+    public void collisionOccured(int tilePattern, boolean horizontal, int position)
+    {
+        bounce(horizontal, position);
+    }
+
+    public void moveUp()
+    {
+    }
+
+    public void moveDown()
+    {
+    }
+
+    public void moveLeft()
+    {
+    }
+
+    public void moveRight()
+    {
+    }
+
+    public void fire()
+    {
+    }
+
+    public void pressedButtonA()
+    {
+    }
+
+    public void pressedButtonB()
+    {
+    }
+
+    public void pressedButtonC()
+    {
+    }
+
+    public void pressedButtonD()
+    {
+    }
+}